@@ -0,0 +1,96 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.wrapper.HopsSession;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads rows by primary key in batches. Each key is loaded into a new
+ * instance and the loads are sent to the data nodes together on flush. A
+ * request is split into chunks of at most
+ * {@link ClusterjConnector#MAX_BATCH_OPERATIONS} keys, and each chunk is
+ * converted and released before the next one is loaded, so neither the
+ * batch nor the number of live instances grows with the request.
+ * <p/>
+ * ClusterJ returns the instance also when the row does not exist. Readers
+ * of tables with a non key column that is never negative set it to a
+ * negative sentinel before the load and skip the rows that still carry
+ * it after the flush, see {@link #markNotFound} and {@link #isFound}.
+ *
+ * @param <D>
+ *     the DTO type
+ * @param <E>
+ *     the entity type
+ */
+public abstract class BatchReader<D, E> {
+  private final Class<D> dtoClass;
+
+  protected BatchReader(Class<D> dtoClass) {
+    this.dtoClass = dtoClass;
+  }
+
+  /**
+   * Sets the sentinel on an instance before it is loaded. Does nothing by
+   * default, which returns every key.
+   */
+  protected void markNotFound(D dto) {
+  }
+
+  /**
+   * @return false if dto still carries the sentinel after the load
+   */
+  protected boolean isFound(D dto) {
+    return true;
+  }
+
+  protected abstract E convert(D dto) throws StorageException;
+
+  /**
+   * @param keys
+   *     the primary keys, an Object[] for compound keys
+   * @return the entities of the rows found, in the order of keys
+   */
+  public List<E> read(HopsSession session, List<?> keys)
+      throws StorageException {
+    int chunkSize = ClusterjConnector.getInstance().getMaxBatchOperations();
+    List<E> result = new ArrayList<E>(keys.size());
+    List<D> dtos = new ArrayList<D>(Math.min(chunkSize, keys.size()));
+    for (int start = 0; start < keys.size(); start += chunkSize) {
+      int end = Math.min(keys.size(), start + chunkSize);
+      for (Object key : keys.subList(start, end)) {
+        D dto = session.newInstance(dtoClass, key);
+        markNotFound(dto);
+        dtos.add(session.load(dto));
+      }
+      session.flush();
+      for (D dto : dtos) {
+        if (isFound(dto)) {
+          result.add(convert(dto));
+        }
+      }
+      session.release(dtos);
+      dtos.clear();
+    }
+    return result;
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import com.mysql.clusterj.ClusterJException;
+import com.mysql.clusterj.ClusterJHelper;
+import com.mysql.clusterj.Constants;
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.wrapper.HopsExceptionHelper;
+import io.hops.metadata.ndb.wrapper.HopsSession;
+import io.hops.metadata.ndb.wrapper.HopsSessionFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One ClusterJ session factory, i.e. one NDB API cluster connection, and the
+ * bookkeeping needed to balance sessions over several of them.
+ */
+class ClusterConnection {
+
+  static final Log LOG = LogFactory.getLog(ClusterConnection.class);
+
+  private final int id;
+  private final Properties conf;
+  private final int maxFailures;
+  private volatile Factory factory;
+  private final ConcurrentMap<HopsSession, Factory> sessionFactories =
+      new ConcurrentHashMap<HopsSession, Factory>();
+  // replaced factories that still have sessions out
+  private final Set<Factory> retiredFactories =
+      Collections.newSetFromMap(new ConcurrentHashMap<Factory, Boolean>());
+  private final AtomicInteger openSessions = new AtomicInteger(0);
+  private final AtomicLong sessionsCreated = new AtomicLong(0);
+  private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+  private final AtomicInteger reconnects = new AtomicInteger(0);
+
+  ClusterConnection(int id, Properties conf, int maxFailures)
+      throws StorageException {
+    this.id = id;
+    this.conf = conf;
+    this.maxFailures = maxFailures;
+    this.factory = new Factory(connect(conf));
+  }
+
+  private static HopsSessionFactory connect(Properties conf)
+      throws StorageException {
+    try {
+      return new HopsSessionFactory(ClusterJHelper.getSessionFactory(conf));
+    } catch (ClusterJException ex) {
+      throw HopsExceptionHelper.wrap(ex);
+    }
+  }
+
+  HopsSession getSession() throws StorageException {
+    Factory current = factory;
+    // counted before the session exists, so a reconnect does not close
+    // the factory under it
+    current.openSessions.incrementAndGet();
+    try {
+      HopsSession session = current.factory.getSession();
+      sessionFactories.put(session, current);
+      consecutiveFailures.set(0);
+      openSessions.incrementAndGet();
+      sessionsCreated.incrementAndGet();
+      return session;
+    } catch (StorageException e) {
+      released(current);
+      if (consecutiveFailures.incrementAndGet() >= maxFailures) {
+        reconnect();
+      }
+      throw e;
+    }
+  }
+
+  void sessionClosed(HopsSession session) {
+    openSessions.decrementAndGet();
+    Factory owner = sessionFactories.remove(session);
+    if (owner != null) {
+      released(owner);
+    }
+  }
+
+  /**
+   * Replaces the session factory after repeated failures. Sessions of the old
+   * factory stay usable until they are recycled, and the old factory is
+   * closed when its last session is closed.
+   */
+  synchronized void reconnect() {
+    if (consecutiveFailures.get() < maxFailures) {
+      return; // another thread reconnected already
+    }
+    LOG.warn("Reconnecting cluster connection " + id + " after " +
+        consecutiveFailures.get() + " failures");
+    // with pooling the ClusterJ helper could return the cached factory,
+    // which is the one being replaced
+    Properties unpooled = new Properties();
+    unpooled.putAll(conf);
+    unpooled.setProperty(Constants.PROPERTY_CONNECTION_POOL_SIZE, "0");
+    Factory old = factory;
+    try {
+      factory = new Factory(connect(unpooled));
+      consecutiveFailures.set(0);
+      reconnects.incrementAndGet();
+    } catch (StorageException e) {
+      LOG.error("Failed to reconnect cluster connection " + id, e);
+      return;
+    }
+    retiredFactories.add(old);
+    old.retired = true;
+    if (old.openSessions.get() == 0) {
+      old.close();
+    }
+  }
+
+  private void released(Factory owner) {
+    if (owner.openSessions.decrementAndGet() == 0 && owner.retired) {
+      owner.close();
+    }
+  }
+
+  /**
+   * Closes the current session factory and every replaced one whose sessions
+   * were not all closed yet.
+   */
+  void close() throws StorageException {
+    for (Factory retired : retiredFactories) {
+      retired.close();
+    }
+    Factory current = factory;
+    if (current.closed.compareAndSet(false, true)) {
+      current.factory.close();
+    }
+  }
+
+  int getId() {
+    return id;
+  }
+
+  boolean isHealthy() {
+    return consecutiveFailures.get() < maxFailures;
+  }
+
+  int getOpenSessions() {
+    return openSessions.get();
+  }
+
+  long getSessionsCreated() {
+    return sessionsCreated.get();
+  }
+
+  int getReconnects() {
+    return reconnects.get();
+  }
+
+  /**
+   * A session factory and the number of its sessions that are open.
+   */
+  private class Factory {
+    private final HopsSessionFactory factory;
+    private final AtomicInteger openSessions = new AtomicInteger(0);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile boolean retired = false;
+
+    Factory(HopsSessionFactory factory) {
+      this.factory = factory;
+    }
+
+    void close() {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      retiredFactories.remove(this);
+      LOG.info("Closing the replaced session factory of cluster connection " +
+          id + " with " + openSessions.get() + " open sessions");
+      try {
+        factory.close();
+      } catch (StorageException e) {
+        LOG.warn(e);
+      }
+    }
+  }
+}
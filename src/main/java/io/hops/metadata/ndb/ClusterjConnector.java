@@ -22,6 +22,7 @@ import com.mysql.clusterj.Constants;
 import com.mysql.clusterj.LockMode;
 import io.hops.StorageConnector;
 import io.hops.exception.StorageException;
+import io.hops.exception.TransientStorageException;
 import io.hops.metadata.common.EntityDataAccess;
 import io.hops.metadata.common.entity.Variable;
 import io.hops.metadata.election.TablesDef;
@@ -53,29 +54,12 @@ import io.hops.metadata.hdfs.dal.SizeLogDataAccess;
 import io.hops.metadata.hdfs.dal.StorageIdMapDataAccess;
 import io.hops.metadata.hdfs.dal.UnderReplicatedBlockDataAccess;
 import io.hops.metadata.hdfs.dal.VariableDataAccess;
-import io.hops.metadata.ndb.dalimpl.election.HdfsLeaderClusterj;
-import io.hops.metadata.ndb.dalimpl.election.YarnLeaderClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.BlockChecksumClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.BlockInfoClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.CorruptReplicaClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.EncodingStatusClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.ExcessReplicaClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.INodeAttributesClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.INodeClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.InvalidatedBlockClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.LeaseClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.LeasePathClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.OnGoingSubTreeOpsClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.PendingBlockClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.QuotaUpdateClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.ReplicaClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.ReplicaUnderConstructionClusterj;
-import io.hops.metadata.ndb.dalimpl.hdfs.UnderReplicatedBlockClusterj;
 import io.hops.metadata.ndb.dalimpl.hdfs.VariableClusterj;
 import io.hops.metadata.ndb.dalimpl.yarn.YarnVariablesClusterJ;
 import io.hops.metadata.ndb.mysqlserver.MysqlServerConnector;
 import io.hops.metadata.ndb.wrapper.HopsSession;
 import io.hops.metadata.ndb.wrapper.HopsTransaction;
+import io.hops.metadata.ndb.wrapper.QueryPlanMonitor;
 import io.hops.metadata.yarn.dal.AppSchedulingInfoBlacklistDataAccess;
 import io.hops.metadata.yarn.dal.AppSchedulingInfoDataAccess;
 import io.hops.metadata.yarn.dal.ContainerDataAccess;
@@ -118,15 +102,36 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ClusterjConnector implements StorageConnector<DBSession> {
 
   private final static ClusterjConnector instance = new ClusterjConnector();
   private static boolean isInitialized = false;
   private DBSessionProvider dbSessionProvider = null;
+  private TransactionExecutor transactionExecutor = null;
+  private ParallelScanner parallelScanner = null;
   static ThreadLocal<DBSession> sessions = new ThreadLocal<DBSession>();
   static final Log LOG = LogFactory.getLog(ClusterjConnector.class);
+  public static final String PARTITION_KEY_FLUSH =
+      "io.hops.session.partition.key.flush";
+  private final Map<Class, Class> partitionKeyDTOs =
+      new ConcurrentHashMap<Class, Class>();
+  // data access classes whose missing DTO was already reported
+  private final Set<Class> unregisteredDTOs =
+      Collections.newSetFromMap(new ConcurrentHashMap<Class, Boolean>());
+  private boolean flushPartitionKey = false;
+  public static final String MAX_BATCH_OPERATIONS =
+      "io.hops.transaction.max.batch.operations";
+  private int maxBatchOperations = 1000;
+  public static final String SCAN_PAGE_SIZE = "io.hops.scan.page.size";
+  private int scanPageSize = 1000;
+  private boolean mysqlTransactionScoped = false;
+  private Properties conf = new Properties();
 
   private ClusterjConnector() {
   }
@@ -141,6 +146,7 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
       LOG.warn("SessionFactory is already initialized");
       return;
     }
+    this.conf = conf;
     LOG.info("Database connect string: " +
         conf.get(Constants.PROPERTY_CLUSTER_CONNECTSTRING));
     LOG.info("Database name: " + conf.get(Constants.PROPERTY_CLUSTER_DATABASE));
@@ -153,6 +159,19 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
         Integer.parseInt((String) conf.get("io.hops.session.reuse.count"));
     dbSessionProvider =
         new DBSessionProvider(conf, reuseCount, initialPoolSize);
+    flushPartitionKey =
+        Boolean.parseBoolean(conf.getProperty(PARTITION_KEY_FLUSH, "false"));
+    maxBatchOperations = Math.max(1, Integer.parseInt(
+        conf.getProperty(MAX_BATCH_OPERATIONS, "1000").trim()));
+    scanPageSize = Math.max(1, Integer.parseInt(
+        conf.getProperty(SCAN_PAGE_SIZE, "1000").trim()));
+    mysqlTransactionScoped = Boolean.parseBoolean(conf.getProperty(
+        io.hops.metadata.ndb.mysqlserver.Constants
+            .PROPERTY_MYSQL_TRANSACTION_SCOPED, "false"));
+    transactionExecutor = new TransactionExecutor(this, conf);
+    QueryPlanMonitor.configure(conf);
+    RowCounters.configure(conf);
+    parallelScanner = new ParallelScanner(this, conf);
 
     isInitialized = true;
   }
@@ -172,8 +191,74 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
     return dbSession.getSession();
   }
 
+  /**
+   * @return the executor that runs units of work in retried transactions
+   */
+  public TransactionExecutor getTransactionExecutor() {
+    return transactionExecutor;
+  }
+
+  /**
+   * @return the max number of operations sent to the data nodes in one
+   * batch by {@link BatchReader}
+   */
+  public int getMaxBatchOperations() {
+    return maxBatchOperations;
+  }
+
+  /**
+   * @return the max number of rows read per query by a {@link PagedScan}
+   */
+  public int getScanPageSize() {
+    return scanPageSize;
+  }
+
+  /**
+   * @return the scanner that splits large table scans over several sessions
+   */
+  public ParallelScanner getParallelScanner() {
+    return parallelScanner;
+  }
+
+  /**
+   * Take a session from the pool for a transaction that is not bound to the
+   * calling thread. The caller must close the context.
+   */
+  public TransactionContext openContext() throws StorageException {
+    return new TransactionContext(dbSessionProvider);
+  }
+
+  private void recordFailure(StorageException e) {
+    DBSession dbSession = sessions.get();
+    if (dbSession == null) {
+      return;
+    }
+    if (dbSession.getContext() != null) {
+      dbSession.getContext().failed(e);
+    } else {
+      dbSession.getHealth()
+          .recordFailure(e instanceof TransientStorageException);
+    }
+  }
+
+  /**
+   * @return the source of the session bound to the current thread, which
+   * collects the transaction latencies of that session
+   */
+  private SessionSource sessionSource() {
+    DBSession dbSession = sessions.get();
+    if (dbSession != null && dbSession.getContext() != null) {
+      return dbSession.getContext().getSource();
+    }
+    return dbSessionProvider;
+  }
+
   private void returnSession(boolean error) throws StorageException {
     DBSession dbSession = sessions.get();
+    if (dbSession != null && dbSession.getContext() != null) {
+      // the session belongs to an attached context, which returns it
+      return;
+    }
     sessions.remove(); // remove, and return to the pool
     dbSessionProvider.returnSession(dbSession,
         error); // if there was an error then close the session
@@ -192,7 +277,23 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
       LOG.fatal("Prevented starting transaction within a transaction.");
       throw new Error("Can not start Tx inside another Tx");
     }
+    RowCounters.discard(sessions.get());
+    long startTime = System.nanoTime();
     session.currentTransaction().begin();
+    sessionSource().recordBegin(startTime);
+    if (mysqlTransactionScoped) {
+      // the helper calls of the transaction share one mysqld connection
+      MysqlServerConnector.getInstance().beginScope();
+      sessions.get().setMysqlScoped(true);
+    }
+  }
+
+  private void endMysqlScope() throws StorageException {
+    DBSession dbSession = sessions.get();
+    if (dbSession != null && dbSession.isMysqlScoped()) {
+      dbSession.setMysqlScoped(false);
+      MysqlServerConnector.getInstance().endScope();
+    }
   }
 
   /**
@@ -210,12 +311,23 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
       if (!tx.isActive()) {
         throw new StorageException("The transaction is not began!");
       }
+      long startTime = System.nanoTime();
       tx.commit();
+      sessionSource().recordCommit(startTime);
+      sessions.get().getHealth()
+          .recordCommit((System.nanoTime() - startTime) / 1000);
+      RowCounters.committed(sessions.get());
     } catch (StorageException e) {
       dbError = true;
+      RowCounters.discard(sessions.get());
+      recordFailure(e);
       throw e;
     } finally {
-      returnSession(dbError);
+      try {
+        endMysqlScope();
+      } finally {
+        returnSession(dbError);
+      }
     }
   }
 
@@ -230,13 +342,21 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
       session = obtainSession();
       HopsTransaction tx = session.currentTransaction();
       if (tx.isActive()) {
+        long startTime = System.nanoTime();
         tx.rollback();
+        sessionSource().recordRollback(startTime);
       }
+      RowCounters.discard(sessions.get());
     } catch (StorageException e) {
       dbError = true;
+      recordFailure(e);
       throw e;
     } finally {
-      returnSession(dbError);
+      try {
+        endMysqlScope();
+      } finally {
+        returnSession(dbError);
+      }
     }
   }
 
@@ -262,7 +382,12 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
 
   @Override
   public void stopStorage() throws StorageException {
+    transactionExecutor.stop();
+    QueryPlanMonitor.stop();
+    RowCounters.stop();
+    parallelScanner.stop();
     dbSessionProvider.stop();
+    MysqlServerConnector.getInstance().stopStorage();
   }
 
   @Override
@@ -286,50 +411,55 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
   @Override
   public void setPartitionKey(Class className, Object key)
       throws StorageException {
-    Class cls = null;
-    if (className == BlockInfoDataAccess.class) {
-      cls = BlockInfoClusterj.BlockInfoDTO.class;
-    } else if (className == PendingBlockDataAccess.class) {
-      cls = PendingBlockClusterj.PendingBlockDTO.class;
-    } else if (className == ReplicaUnderConstructionDataAccess.class) {
-      cls = ReplicaUnderConstructionClusterj.ReplicaUcDTO.class;
-    } else if (className == INodeDataAccess.class) {
-      cls = INodeClusterj.InodeDTO.class;
-    } else if (className == INodeAttributesDataAccess.class) {
-      cls = INodeAttributesClusterj.INodeAttributesDTO.class;
-    } else if (className == LeaseDataAccess.class) {
-      cls = LeaseClusterj.LeaseDTO.class;
-    } else if (className == LeasePathDataAccess.class) {
-      cls = LeasePathClusterj.LeasePathsDTO.class;
-    } else if (className == HdfsLeDescriptorDataAccess.class) {
-      cls = HdfsLeaderClusterj.HdfsLeaderDTO.class;
-    } else if (className == YarnLeDescriptorDataAccess.class) {
-      cls = YarnLeaderClusterj.YarnLeaderDTO.class;
-    } else if (className == ReplicaDataAccess.class) {
-      cls = ReplicaClusterj.ReplicaDTO.class;
-    } else if (className == CorruptReplicaDataAccess.class) {
-      cls = CorruptReplicaClusterj.CorruptReplicaDTO.class;
-    } else if (className == ExcessReplicaDataAccess.class) {
-      cls = ExcessReplicaClusterj.ExcessReplicaDTO.class;
-    } else if (className == InvalidateBlockDataAccess.class) {
-      cls = InvalidatedBlockClusterj.InvalidateBlocksDTO.class;
-    } else if (className == UnderReplicatedBlockDataAccess.class) {
-      cls = UnderReplicatedBlockClusterj.UnderReplicatedBlocksDTO.class;
-    } else if (className == VariableDataAccess.class) {
-      cls = VariableClusterj.VariableDTO.class;
-    } else if (className == QuotaUpdateDataAccess.class) {
-      cls = QuotaUpdateClusterj.QuotaUpdateDTO.class;
-    } else if (className == EncodingStatusDataAccess.class) {
-      cls = EncodingStatusClusterj.EncodingStatusDto.class;
-    } else if (className == BlockChecksumDataAccess.class) {
-      cls = BlockChecksumClusterj.BlockChecksumDto.class;
-    } else if (className == OngoingSubTreeOpsDataAccess.class) {
-      cls = OnGoingSubTreeOpsClusterj.OnGoingSubTreeOpsDTO.class;
+    setPartitionKey(className, key, flushPartitionKey);
+  }
+
+  /**
+   * Set the partition key hint of the current transaction. Unless flush is
+   * set the hint is only sent to the database together with the first
+   * operation of the transaction, saving a round trip.
+   *
+   * @param className
+   *     the data access interface of the table the key belongs to
+   * @param key
+   *     the partition key
+   * @param flush
+   *     flush the session after setting the hint
+   * @throws StorageException
+   */
+  public void setPartitionKey(Class className, Object key, boolean flush)
+      throws StorageException {
+    Class dto = partitionKeyDTOs.get(className);
+    if (dto == null) {
+      if (unregisteredDTOs.add(className)) {
+        LOG.warn("No DTO registered for " + className.getName() +
+            ", partition key hints for it are ignored");
+      }
+      return;
     }
 
     HopsSession session = obtainSession();
-    session.setPartitionKey(cls, key);
-    session.flush();
+    session.setPartitionKey(dto, key);
+    if (flush) {
+      session.flush();
+    }
+  }
+
+  /**
+   * Register the DTO that maps the table of a data access interface, so that
+   * partition key hints can be given for that table.
+   *
+   * @param dataAccess
+   *     the data access interface
+   * @param dto
+   *     the persistence capable interface of the table
+   */
+  public void registerPartitionKeyDTO(Class dataAccess, Class dto) {
+    Class previous = partitionKeyDTOs.put(dataAccess, dto);
+    if (previous != null && previous != dto) {
+      LOG.warn("Partition key DTO of " + dataAccess.getName() +
+          " changed from " + previous.getName() + " to " + dto.getName());
+    }
   }
 
   @Override
@@ -390,48 +520,40 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
     final int RETRIES = 5; // in test
     for (int i = 0; i < RETRIES; i++) {
       try {
+        FormatEngine tables = new FormatEngine(conf, transactional);
         for (Class e : das) {
           if (e == INodeDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.INodeTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.INodeTableDef.TABLE_NAME);
           } else if (e == BlockInfoDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.BlockInfoTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.BlockInfoTableDef.TABLE_NAME);
           } else if (e == LeaseDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.LeaseTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.LeaseTableDef.TABLE_NAME);
           } else if (e == LeasePathDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.LeasePathTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.LeasePathTableDef.TABLE_NAME);
           } else if (e == OngoingSubTreeOpsDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.OnGoingSubTreeOpsDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.OnGoingSubTreeOpsDef.TABLE_NAME);
           } else if (e == ReplicaDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.ReplicaTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.ReplicaTableDef.TABLE_NAME);
           } else if (e == ReplicaUnderConstructionDataAccess.class) {
-            MysqlServerConnector.truncateTable(transactional,
+            tables.add(
                 io.hops.metadata.hdfs.TablesDef.ReplicaUnderConstructionTableDef.TABLE_NAME);
           } else if (e == InvalidateBlockDataAccess.class) {
-            MysqlServerConnector.truncateTable(transactional,
+            tables.add(
                 io.hops.metadata.hdfs.TablesDef.InvalidatedBlockTableDef.TABLE_NAME);
           } else if (e == ExcessReplicaDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.ExcessReplicaTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.ExcessReplicaTableDef.TABLE_NAME);
           } else if (e == PendingBlockDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.PendingBlockTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.PendingBlockTableDef.TABLE_NAME);
           } else if (e == CorruptReplicaDataAccess.class) {
-            MysqlServerConnector.truncateTable(transactional,
+            tables.add(
                 io.hops.metadata.hdfs.TablesDef.CorruptReplicaTableDef.TABLE_NAME);
           } else if (e == UnderReplicatedBlockDataAccess.class) {
-            MysqlServerConnector.truncateTable(transactional,
+            tables.add(
                 io.hops.metadata.hdfs.TablesDef.UnderReplicatedBlockTableDef.TABLE_NAME);
           } else if (e == HdfsLeDescriptorDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, TablesDef.HdfsLeaderTableDef.TABLE_NAME);
+            tables.add(TablesDef.HdfsLeaderTableDef.TABLE_NAME);
           } else if (e == INodeAttributesDataAccess.class) {
-            MysqlServerConnector.truncateTable(transactional,
+            tables.add(
                 io.hops.metadata.hdfs.TablesDef.INodeAttributesTableDef.TABLE_NAME);
           } else if (e == VariableDataAccess.class) {
             HopsSession session = obtainSession();
@@ -446,142 +568,134 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
             }
             session.currentTransaction().commit();
           } else if (e == StorageIdMapDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.StorageIdMapTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.StorageIdMapTableDef.TABLE_NAME);
           } else if (e == BlockLookUpDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.BlockLookUpTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.BlockLookUpTableDef.TABLE_NAME);
           } else if (e == SafeBlocksDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.SafeBlocksTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.SafeBlocksTableDef.TABLE_NAME);
           } else if (e == MisReplicatedRangeQueueDataAccess.class) {
-            MysqlServerConnector.truncateTable(transactional,
+            tables.add(
                 io.hops.metadata.hdfs.TablesDef.MisReplicatedRangeQueueTableDef.TABLE_NAME);
           } else if (e == QuotaUpdateDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.QuotaUpdateTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.QuotaUpdateTableDef.TABLE_NAME);
           } else if (e == EncodingStatusDataAccess.class) {
-            MysqlServerConnector.truncateTable(transactional,
+            tables.add(
                 io.hops.metadata.hdfs.TablesDef.EncodingStatusTableDef.TABLE_NAME);
           } else if (e == BlockChecksumDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.BlockChecksumTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.BlockChecksumTableDef.TABLE_NAME);
           } else if (e == MetadataLogDataAccess.class) {
-            MysqlServerConnector.truncateTable(transactional,
+            tables.add(
                 io.hops.metadata.hdfs.TablesDef.MetadataLogTableDef.TABLE_NAME);
           } else if (e == AccessTimeLogDataAccess.class) {
-            MysqlServerConnector.truncateTable(transactional,
+            tables.add(
                 io.hops.metadata.hdfs.TablesDef.AccessTimeLogTableDef.TABLE_NAME);
           } else if (e == SizeLogDataAccess.class) {
-            MysqlServerConnector.truncateTable(transactional,
+            tables.add(
                 io.hops.metadata.hdfs.TablesDef.SizeLogTableDef.TABLE_NAME);
           } else if (e == EncodingJobsDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.EncodingJobsTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.EncodingJobsTableDef.TABLE_NAME);
           } else if (e == RepairJobsDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional, io.hops.metadata.hdfs.TablesDef.RepairJobsTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.hdfs.TablesDef.RepairJobsTableDef.TABLE_NAME);
           } else if (e == YarnLeDescriptorDataAccess.class) {
-            MysqlServerConnector
-                .truncateTable(transactional,
+            tables.add(
                     TablesDef.YarnLeaderTableDef.TABLE_NAME);
           } else if (e == AppSchedulingInfoDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.AppSchedulingInfoTableDef.TABLE_NAME);
           } else if (e == AppSchedulingInfoBlacklistDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.AppSchedulingInfoBlacklistTableDef.TABLE_NAME);
           } else if (e == ContainerDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.ContainerTableDef.TABLE_NAME);
           } else if (e == ContainerIdToCleanDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.ContainerIdToCleanTableDef.TABLE_NAME);
           } else if (e == ContainerStatusDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.ContainerStatusTableDef.TABLE_NAME);
           } else if (e ==
               FiCaSchedulerAppLastScheduledContainerDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.FiCaSchedulerAppLastScheduledContainerTableDef.TABLE_NAME);
           } else if (e == FiCaSchedulerAppLiveContainersDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.FiCaSchedulerAppLiveContainersTableDef.TABLE_NAME);
           } else if (e ==
               FiCaSchedulerAppNewlyAllocatedContainersDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.FiCaSchedulerAppNewlyAllocatedContainersTableDef.TABLE_NAME);
           } else if (e == FiCaSchedulerAppReservationsDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.FiCaSchedulerAppReservationsTableDef.TABLE_NAME);
           } else if (e == FiCaSchedulerAppReservedContainersDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.FiCaSchedulerAppReservedContainersTableDef.TABLE_NAME);
           } else if (e ==
               FiCaSchedulerAppSchedulingOpportunitiesDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.FiCaSchedulerAppSchedulingOpportunitiesTableDef.TABLE_NAME);
           } else if (e == FiCaSchedulerNodeDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.FiCaSchedulerNodeTableDef.TABLE_NAME);
           } else if (e == JustLaunchedContainersDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.JustLaunchedContainersTableDef.TABLE_NAME);
           } else if (e == LaunchedContainersDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.LaunchedContainersTableDef.TABLE_NAME);
           } else if (e == NodeDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.NodeTableDef.TABLE_NAME);
           } else if (e == QueueMetricsDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.QueueMetricsTableDef.TABLE_NAME);
           } else if (e == ResourceDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.ResourceTableDef.TABLE_NAME);
           } else if (e == ResourceRequestDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.ResourceRequestTableDef.TABLE_NAME);
           } else if (e == RMContainerDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.RMContainerTableDef.TABLE_NAME);
           } else if (e == RMNodeDataAccess.class) {
             // Truncate does not work with foreign keys
-            truncate(true,
+            tables.addReferenced(
                 io.hops.metadata.yarn.TablesDef.RMNodeTableDef.TABLE_NAME);
           } else if (e == SchedulerApplicationDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.SchedulerApplicationTableDef.TABLE_NAME);
           } else if (e == SequenceNumberDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.SequenceNumberTableDef.TABLE_NAME);
           } else if (e == FinishedApplicationsDataAccess.class) {
-            truncate(transactional,
+            tables.add(
                 io.hops.metadata.yarn.TablesDef.FinishedApplicationsTableDef.TABLE_NAME);
           } else if (e == RMContextInactiveNodesDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.RMContextInactiveNodesTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.RMContextInactiveNodesTableDef.TABLE_NAME);
           } else if (e == RMContextActiveNodesDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.RMContextActiveNodesTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.RMContextActiveNodesTableDef.TABLE_NAME);
           } else if (e == UpdatedContainerInfoDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.UpdatedContainerInfoTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.UpdatedContainerInfoTableDef.TABLE_NAME);
           } else if (e == SecretMamagerKeysDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.SecretMamagerKeysTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.SecretMamagerKeysTableDef.TABLE_NAME);
           } else if (e == AllocateResponseDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.AllocateResponseTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.AllocateResponseTableDef.TABLE_NAME);
           } else if (e == DelegationKeyDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.DelegationKeyTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.DelegationKeyTableDef.TABLE_NAME);
           } else if (e == DelegationTokenDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.DelegationTokenTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.DelegationTokenTableDef.TABLE_NAME);
           } else if (e == RMStateVersionDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.RMStateVersionTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.RMStateVersionTableDef.TABLE_NAME);
           } else if (e == ApplicationAttemptStateDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.ApplicationAttemptStateTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.ApplicationAttemptStateTableDef.TABLE_NAME);
           } else if (e == ApplicationStateDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.ApplicationStateTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.ApplicationStateTableDef.TABLE_NAME);
           } else if (e == RPCDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.RPCTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.RPCTableDef.TABLE_NAME);
           } else if (e == RMLoadDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.RMLoadTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.RMLoadTableDef.TABLE_NAME);
           } else if (e == YarnVariablesDataAccess.class) {
             HopsSession session = obtainSession();
             session.currentTransaction().begin();
@@ -596,13 +710,14 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
             }
             session.currentTransaction().commit();
           } else if (e == PendingEventDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.PendingEventTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.PendingEventTableDef.TABLE_NAME);
           } else if (e == NextHeartbeatDataAccess.class) {
-            truncate(transactional, io.hops.metadata.yarn.TablesDef.NextHeartbeatTableDef.TABLE_NAME);
+            tables.add(io.hops.metadata.yarn.TablesDef.NextHeartbeatTableDef.TABLE_NAME);
           }
         }
-        MysqlServerConnector.truncateTable(transactional,
-            "hdfs_path_memcached");
+        tables.add("hdfs_path_memcached");
+        tables.run();
+        RowCounters.resetAll();
         return true;
 
       } catch (SQLException ex) {
@@ -611,14 +726,10 @@ public class ClusterjConnector implements StorageConnector<DBSession> {
     } // end retry loop
     return false;
   }
-  
-  private void truncate(boolean transactional, String tableName)
-      throws StorageException, SQLException {
-    MysqlServerConnector.truncateTable(transactional, tableName);
-  }
 
   @Override
   public void dropAndRecreateDB() throws StorageException {
     MysqlServerConnector.getInstance().dropAndRecreateDB();
+    RowCounters.resetAll();
   }
 }
@@ -20,16 +20,30 @@ package io.hops.metadata.ndb;
 
 import io.hops.metadata.ndb.wrapper.HopsSession;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class DBSession {
 
   private HopsSession session;
   private final int MAX_REUSE_COUNT;
   private int sessionUseCount;
+  private final ClusterConnection connection;
+  private final SessionHealth health = new SessionHealth();
+  private TransactionContext context;
+  private Map<RowCounter, Map<Integer, Long>> counterDeltas;
+  private boolean mysqlScoped = false;
 
   public DBSession(HopsSession session, int maxReuseCount) {
+    this(session, maxReuseCount, null);
+  }
+
+  DBSession(HopsSession session, int maxReuseCount,
+      ClusterConnection connection) {
     this.session = session;
     this.MAX_REUSE_COUNT = maxReuseCount;
     this.sessionUseCount = 0;
+    this.connection = connection;
   }
 
   public HopsSession getSession() {
@@ -47,4 +61,55 @@ public class DBSession {
   public int getMaxReuseCount() {
     return MAX_REUSE_COUNT;
   }
+
+  public SessionHealth getHealth() {
+    return health;
+  }
+
+  ClusterConnection getConnection() {
+    return connection;
+  }
+
+  /**
+   * @return the context that holds this session, or null if the session is
+   * bound to a thread by {@link ClusterjConnector}
+   */
+  TransactionContext getContext() {
+    return context;
+  }
+
+  void setContext(TransactionContext context) {
+    this.context = context;
+  }
+
+  /**
+   * @return whether the transaction of this session holds a mysqld scope
+   */
+  boolean isMysqlScoped() {
+    return mysqlScoped;
+  }
+
+  void setMysqlScoped(boolean mysqlScoped) {
+    this.mysqlScoped = mysqlScoped;
+  }
+
+  /**
+   * @return the row count deltas recorded by the current transaction
+   */
+  Map<RowCounter, Map<Integer, Long>> getCounterDeltas() {
+    if (counterDeltas == null) {
+      counterDeltas = new HashMap<RowCounter, Map<Integer, Long>>();
+    }
+    return counterDeltas;
+  }
+
+  /**
+   * @return the recorded row count deltas, or null if there are none, and
+   * clears them
+   */
+  Map<RowCounter, Map<Integer, Long>> takeCounterDeltas() {
+    Map<RowCounter, Map<Integer, Long>> deltas = counterDeltas;
+    counterDeltas = null;
+    return deltas;
+  }
 }
@@ -18,38 +18,100 @@
  */
 package io.hops.metadata.ndb;
 
-import com.mysql.clusterj.ClusterJException;
-import com.mysql.clusterj.ClusterJHelper;
 import com.mysql.clusterj.Constants;
 import io.hops.exception.StorageException;
-import io.hops.metadata.ndb.wrapper.HopsExceptionHelper;
+import io.hops.metadata.ndb.metrics.LatencyHistogram;
+import io.hops.metadata.ndb.metrics.LatencySnapshot;
+import io.hops.metadata.ndb.metrics.MBeans;
 import io.hops.metadata.ndb.wrapper.HopsSession;
-import io.hops.metadata.ndb.wrapper.HopsSessionFactory;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.util.NoSuchElementException;
+import javax.management.ObjectName;
 import java.util.Properties;
-import java.util.Random;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class DBSessionProvider implements Runnable {
+/**
+ * Keeps a pool of ready to use ClusterJ sessions.
+ * <p/>
+ * Worn out sessions are handed over to a small pool of recycler threads that
+ * close and recreate them. The recyclers block while there is nothing to do,
+ * so an idle provider does not use any CPU. The pool is kept around its
+ * target size: when the number of available sessions drops below the low
+ * watermark the recyclers refill it, and sessions returned while the pool is
+ * above the high watermark are closed. Request threads never create sessions
+ * themselves; if the pool runs dry they wait for a recycler to hand one over.
+ */
+public class DBSessionProvider
+    implements DBSessionProviderMXBean, SessionSource {
+
+  public static final String RECYCLER_THREADS =
+      "io.hops.session.recycler.threads";
+  public static final String POOL_LOW_WATERMARK =
+      "io.hops.session.pool.low.watermark";
+  public static final String POOL_HIGH_WATERMARK =
+      "io.hops.session.pool.high.watermark";
+  public static final String SESSION_WAIT_TIMEOUT =
+      "io.hops.session.wait.timeout";
+  public static final String POOL_STRIPED = "io.hops.session.pool.striped";
+  public static final String POOL_STRIPES = "io.hops.session.pool.stripes";
+  public static final String POOL_INIT_THREADS =
+      "io.hops.session.pool.init.threads";
+  public static final String POOL_LAZY_INIT = "io.hops.session.pool.lazy";
+  public static final String POOL_MIN_SIZE = "io.hops.session.pool.min.size";
+  public static final String LIFETIME_POLICY =
+      "io.hops.session.lifetime.policy";
+  public static final String FACTORY_COUNT = "io.hops.session.factory.count";
+  public static final String FACTORY_BALANCING =
+      "io.hops.session.factory.balancing";
+  public static final String FACTORY_MAX_FAILURES =
+      "io.hops.session.factory.max.failures";
+  public static final String BALANCING_ROUND_ROBIN = "round-robin";
+  public static final String BALANCING_LEAST_LOAD = "least-load";
+
+  private static final int DEFAULT_RECYCLER_THREADS = 2;
+  private static final long DEFAULT_SESSION_WAIT_TIMEOUT = 60 * 1000;
+  private static final int DEFAULT_FACTORY_MAX_FAILURES = 3;
 
   static final Log LOG = LogFactory.getLog(DBSessionProvider.class);
-  static HopsSessionFactory sessionFactory;
-  private ConcurrentLinkedQueue<DBSession> sessionPool =
-      new ConcurrentLinkedQueue<DBSession>();
-  private ConcurrentLinkedQueue<DBSession> toGC =
-      new ConcurrentLinkedQueue<DBSession>();
-  private final int MAX_REUSE_COUNT;
+  private ClusterConnection[] connections;
+  private boolean leastLoadBalancing;
+  private final AtomicInteger nextConnection = new AtomicInteger(0);
+  private final SessionPool sessionPool;
   private Properties conf;
-  private final Random rand;
+  private final SessionLifetimePolicy lifetimePolicy;
   private AtomicInteger sessionsCreated = new AtomicInteger(0);
-  private long rollingAvg[];
+  // creation times in ms of the most recently created sessions
+  private final AtomicLongArray rollingAvg;
   private AtomicInteger rollingAvgIndex = new AtomicInteger(-1);
-  private boolean automaticRefresh = false;
-  private Thread thread;
+  private final AtomicInteger inUseSessions = new AtomicInteger(0);
+  private final AtomicLong emptyPoolWaits = new AtomicLong(0);
+  private final LatencyHistogram acquireLatency = new LatencyHistogram();
+  private final LatencyHistogram createLatency = new LatencyHistogram();
+  private final LatencyHistogram closeLatency = new LatencyHistogram();
+  private final LatencyHistogram beginLatency = new LatencyHistogram();
+  private final LatencyHistogram commitLatency = new LatencyHistogram();
+  private final LatencyHistogram rollbackLatency = new LatencyHistogram();
+  private ObjectName mbeanName;
+  private final int targetPoolSize;
+  private final int lowWatermark;
+  private final int highWatermark;
+  private final long sessionWaitTimeout;
+  // sessions that are scheduled for creation but not yet in the pool
+  private final AtomicInteger pendingCreations = new AtomicInteger(0);
+  private ThreadPoolExecutor recyclers;
+  private volatile boolean running = false;
+  private volatile long timeToReady = -1;
+  private volatile long timeToFullPool = -1;
 
   public DBSessionProvider(Properties conf, int reuseCount, int initialPoolSize)
       throws StorageException {
@@ -58,154 +120,599 @@ public class DBSessionProvider implements Runnable {
       System.err.println("Invalid value for session reuse count");
       System.exit(-1);
     }
-    this.MAX_REUSE_COUNT = reuseCount;
-    rand = new Random(System.currentTimeMillis());
-    rollingAvg = new long[initialPoolSize];
-    start(initialPoolSize);
+    this.lifetimePolicy = createLifetimePolicy(conf, reuseCount);
+    rollingAvg = new AtomicLongArray(Math.max(1, initialPoolSize));
+    this.targetPoolSize = initialPoolSize;
+    this.lowWatermark =
+        getInt(conf, POOL_LOW_WATERMARK, Math.max(1, initialPoolSize / 4));
+    this.highWatermark =
+        Math.max(initialPoolSize, getInt(conf, POOL_HIGH_WATERMARK,
+            initialPoolSize));
+    this.sessionWaitTimeout =
+        getLong(conf, SESSION_WAIT_TIMEOUT, DEFAULT_SESSION_WAIT_TIMEOUT);
+    if (Boolean.parseBoolean(conf.getProperty(POOL_STRIPED))) {
+      sessionPool = new StripedSessionPool(getInt(conf, POOL_STRIPES,
+          Runtime.getRuntime().availableProcessors()));
+    } else {
+      sessionPool = new QueueSessionPool();
+    }
+    start(initialPoolSize,
+        getInt(conf, RECYCLER_THREADS, DEFAULT_RECYCLER_THREADS));
+    mbeanName = MBeans.register("DBSessionProvider", this);
   }
 
-  private void start(int initialPoolSize) throws StorageException {
+  private void start(int initialPoolSize, int recyclerThreads)
+      throws StorageException {
     System.out.println("Database connect string: " +
         conf.get(Constants.PROPERTY_CLUSTER_CONNECTSTRING));
     System.out.println(
         "Database name: " + conf.get(Constants.PROPERTY_CLUSTER_DATABASE));
     System.out.println("Max Transactions: " +
         conf.get(Constants.PROPERTY_CLUSTER_MAX_TRANSACTIONS));
-    try {
-      sessionFactory =
-          new HopsSessionFactory(ClusterJHelper.getSessionFactory(conf));
-    } catch (ClusterJException ex) {
-      throw HopsExceptionHelper.wrap(ex);
+    startConnections();
+
+    recyclers = new ThreadPoolExecutor(recyclerThreads, recyclerThreads, 0L,
+        TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+        daemonThreadFactory("Session Pool Recycler"));
+    running = true;
+
+    warmUp(initialPoolSize,
+        getInt(conf, POOL_INIT_THREADS,
+            Runtime.getRuntime().availableProcessors()),
+        Boolean.parseBoolean(conf.getProperty(POOL_LAZY_INIT)),
+        getInt(conf, POOL_MIN_SIZE, lowWatermark));
+  }
+
+  /**
+   * Creates the initial sessions in parallel. In lazy mode this returns as
+   * soon as minSize sessions exist and the rest of the pool is filled in the
+   * background.
+   */
+  private void warmUp(final int initialPoolSize, int threads, boolean lazy,
+      int minSize) throws StorageException {
+    if (initialPoolSize <= 0) {
+      timeToReady = 0;
+      timeToFullPool = 0;
+      return;
     }
+    threads = Math.max(1, Math.min(threads, initialPoolSize));
+    final int readySize =
+        lazy ? Math.max(1, Math.min(minSize, initialPoolSize)) :
+            initialPoolSize;
+    final long startTime = System.currentTimeMillis();
+    final CountDownLatch ready = new CountDownLatch(readySize);
+    final CountDownLatch full = new CountDownLatch(initialPoolSize);
+    final AtomicReference<StorageException> failure =
+        new AtomicReference<StorageException>();
+    final ThreadPoolExecutor warmers = new ThreadPoolExecutor(threads,
+        threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+        daemonThreadFactory("Session Pool Warmer"));
 
+    // counted as pending so that refills do not race with the warm up
+    pendingCreations.addAndGet(initialPoolSize);
     for (int i = 0; i < initialPoolSize; i++) {
-      sessionPool.add(initSession());
+      warmers.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            sessionPool.add(initSession());
+            ready.countDown();
+          } catch (StorageException e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            pendingCreations.decrementAndGet();
+            full.countDown();
+            if (full.getCount() == 0) {
+              timeToFullPool = System.currentTimeMillis() - startTime;
+              LOG.info("Session pool filled with " + sessionPool.size() +
+                  " sessions in " + timeToFullPool + " ms");
+              warmers.shutdown();
+            }
+          }
+        }
+      });
     }
 
-    thread = new Thread(this, "Session Pool Refresh Daemon");
-    thread.setDaemon(true);
-    automaticRefresh = true;
-    thread.start();
+    try {
+      while (!ready.await(100, TimeUnit.MILLISECONDS)) {
+        if (full.getCount() == 0) {
+          break; // some sessions failed, the ready count can not be reached
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      abortWarmUp(warmers);
+      throw new StorageException(e);
+    }
+    if (ready.getCount() > 0) {
+      abortWarmUp(warmers);
+      throw failure.get();
+    }
+    timeToReady = System.currentTimeMillis() - startTime;
+    LOG.info("Session pool ready with " + readySize + " sessions in " +
+        timeToReady + " ms");
+    if (failure.get() != null) {
+      LOG.warn("Failed to create some of the initial sessions",
+          failure.get());
+    }
+  }
+
+  /**
+   * Closes the sessions and cluster connections of a start that fails. The
+   * constructor throws, so nobody else could close them.
+   */
+  private void abortWarmUp(ThreadPoolExecutor warmers) {
+    warmers.shutdownNow();
+    try {
+      warmers.awaitTermination(sessionWaitTimeout, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      stop();
+    } catch (StorageException e) {
+      LOG.warn("Failed to close the sessions of the failed start", e);
+    }
+  }
+
+  static ThreadFactory daemonThreadFactory(final String name) {
+    return new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger(0);
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, name + " " + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * Opens io.hops.session.factory.count cluster connections. With a single
+   * connection the configuration is used as is. With several, ClusterJ
+   * connection pooling is turned off so that every call to the ClusterJ
+   * helper returns a new session factory with its own cluster connection.
+   */
+  private void startConnections() throws StorageException {
+    int count = getInt(conf, FACTORY_COUNT, 1);
+    if (count <= 0) {
+      throw new StorageException("Invalid value for " + FACTORY_COUNT);
+    }
+    int maxFailures =
+        getInt(conf, FACTORY_MAX_FAILURES, DEFAULT_FACTORY_MAX_FAILURES);
+    leastLoadBalancing = BALANCING_LEAST_LOAD.equals(
+        conf.getProperty(FACTORY_BALANCING, BALANCING_ROUND_ROBIN).trim());
+
+    Properties factoryConf = conf;
+    if (count > 1) {
+      factoryConf = new Properties();
+      factoryConf.putAll(conf);
+      factoryConf.setProperty(Constants.PROPERTY_CONNECTION_POOL_SIZE, "0");
+    }
+    ClusterConnection[] opened = new ClusterConnection[count];
+    try {
+      for (int i = 0; i < count; i++) {
+        opened[i] = new ClusterConnection(i, factoryConf, maxFailures);
+      }
+    } catch (StorageException e) {
+      for (ClusterConnection connection : opened) {
+        if (connection != null) {
+          try {
+            connection.close();
+          } catch (StorageException closeFailure) {
+            LOG.warn(closeFailure);
+          }
+        }
+      }
+      throw e;
+    }
+    connections = opened;
+    LOG.info("Opened " + count + " cluster connection(s), balancing " +
+        (leastLoadBalancing ? BALANCING_LEAST_LOAD : BALANCING_ROUND_ROBIN));
+  }
+
+  /**
+   * Picks the connection for the next session. Unhealthy connections are only
+   * used when no healthy one is left.
+   */
+  private ClusterConnection selectConnection() {
+    if (connections.length == 1) {
+      return connections[0];
+    }
+    ClusterConnection selected = null;
+    if (leastLoadBalancing) {
+      for (ClusterConnection connection : connections) {
+        if (connection.isHealthy() && (selected == null ||
+            connection.getOpenSessions() < selected.getOpenSessions())) {
+          selected = connection;
+        }
+      }
+    } else {
+      for (int i = 0; i < connections.length && selected == null; i++) {
+        ClusterConnection connection = connections[
+            (nextConnection.getAndIncrement() & Integer.MAX_VALUE) %
+                connections.length];
+        if (connection.isHealthy()) {
+          selected = connection;
+        }
+      }
+    }
+    return selected != null ? selected : connections[
+        (nextConnection.getAndIncrement() & Integer.MAX_VALUE) %
+            connections.length];
   }
 
   private DBSession initSession() throws StorageException {
-    Long startTime = System.currentTimeMillis();
-    HopsSession session = sessionFactory.getSession();
-    Long sessionCreationTime = (System.currentTimeMillis() - startTime);
-    rollingAvg[rollingAvgIndex.incrementAndGet() % rollingAvg.length] =
-        sessionCreationTime;
-
-    int reuseCount = rand.nextInt(MAX_REUSE_COUNT) + 1;
-    DBSession dbSession = new DBSession(session, reuseCount);
+    long startTime = System.nanoTime();
+    ClusterConnection connection = selectConnection();
+    HopsSession session = connection.getSession();
+    long sessionCreationTime = System.nanoTime() - startTime;
+    createLatency.record(sessionCreationTime / 1000);
+    rollingAvg.set((rollingAvgIndex.incrementAndGet() & Integer.MAX_VALUE) %
+        rollingAvg.length(), sessionCreationTime / 1000000);
+
+    int reuseCount = lifetimePolicy.newSessionReuseCount();
+    DBSession dbSession = new DBSession(session, reuseCount, connection);
     sessionsCreated.incrementAndGet();
     return dbSession;
   }
 
   private void closeSession(DBSession dbSession) throws StorageException {
-    Long startTime = System.currentTimeMillis();
-    dbSession.getSession().close();
-    Long sessionCreationTime = (System.currentTimeMillis() - startTime);
-    rollingAvg[rollingAvgIndex.incrementAndGet() % rollingAvg.length] =
-        sessionCreationTime;
+    long startTime = System.nanoTime();
+    try {
+      dbSession.getSession().close();
+    } finally {
+      // may close a replaced session factory, so after the session
+      if (dbSession.getConnection() != null) {
+        dbSession.getConnection().sessionClosed(dbSession.getSession());
+      }
+    }
+    closeLatency.recordSince(startTime);
   }
 
   public void stop() throws StorageException {
-    automaticRefresh = false;
-    while (!sessionPool.isEmpty()) {
-      DBSession dbsession = sessionPool.remove();
+    running = false;
+    if (recyclers != null) {
+      recyclers.shutdownNow();
+    }
+    DBSession dbsession;
+    while ((dbsession = sessionPool.poll()) != null) {
       closeSession(dbsession);
     }
+    for (ClusterConnection connection : connections) {
+      connection.close();
+    }
+    MBeans.unregister(mbeanName);
   }
 
+  /**
+   * Takes a session from the pool. If the pool is empty the caller waits for
+   * the recyclers to hand over a new session instead of creating one inline.
+   *
+   * @return a ready to use session
+   * @throws StorageException
+   *     if no session became available within the configured wait timeout
+   */
+  @Override
   public DBSession getSession() throws StorageException {
-    try {
-      DBSession session = sessionPool.remove();
-      return session;
-    } catch (NoSuchElementException e) {
-      LOG.warn(
-          "DB Sessino provider cant keep up with the demand for new sessions");
-      return initSession();
+    long startTime = System.nanoTime();
+    DBSession session = sessionPool.poll();
+    if (session == null) {
+      // counted in emptyPoolWaits, only a wait that times out is a problem
+      emptyPoolWaits.incrementAndGet();
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Session pool is empty, waiting for the recyclers");
+      }
+      refill();
+      try {
+        session = sessionPool.poll(sessionWaitTimeout, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new StorageException(e);
+      }
+      if (session == null) {
+        LOG.warn(
+            "DB Session provider cant keep up with the demand for new sessions");
+        throw new StorageException(
+            "Timed out waiting for a database session after " +
+                sessionWaitTimeout + " ms");
+      }
+    } else if (sessionPool.size() + pendingCreations.get() < lowWatermark) {
+      refill();
     }
+    inUseSessions.incrementAndGet();
+    acquireLatency.recordSince(startTime);
+    return session;
   }
 
+  @Override
   public void returnSession(DBSession returnedSession, boolean forceClose) {
+    inUseSessions.decrementAndGet();
     //session has been used, increment the use counter
     returnedSession
         .setSessionUseCount(returnedSession.getSessionUseCount() + 1);
 
-    if ((returnedSession.getSessionUseCount() >=
-        returnedSession.getMaxReuseCount()) ||
-        forceClose) { // session can be closed even before the reuse count has expired. Close the session incase of database errors.
-      toGC.add(returnedSession);
+    if (lifetimePolicy.shouldRecycle(returnedSession, forceClose)) {
+      recycle(returnedSession, true);
+    } else if (sessionPool.size() >= highWatermark) {
+      // the pool has grown beyond its limit, shrink it
+      recycle(returnedSession, false);
     } else { // increment the count and return it to the pool
       sessionPool.add(returnedSession);
     }
   }
 
+  /**
+   * Hands a session over to the recyclers to be closed and, if replace is
+   * set, recreated.
+   */
+  private void recycle(DBSession session, boolean replace) {
+    if (replace) {
+      pendingCreations.incrementAndGet();
+    }
+    if (!submit(new RecycleTask(session, replace)) && replace) {
+      pendingCreations.decrementAndGet();
+    }
+  }
+
+  /**
+   * Schedules enough session creations to bring the pool back to its target
+   * size.
+   */
+  private void refill() {
+    while (true) {
+      int pending = pendingCreations.get();
+      int missing = targetPoolSize - sessionPool.size() - pending;
+      if (missing <= 0) {
+        return;
+      }
+      if (pendingCreations.compareAndSet(pending, pending + missing)) {
+        for (int i = 0; i < missing; i++) {
+          if (!submit(new RecycleTask(null, true))) {
+            pendingCreations.decrementAndGet();
+          }
+        }
+        return;
+      }
+    }
+  }
+
+  private boolean submit(RecycleTask task) {
+    if (!running) {
+      return false;
+    }
+    try {
+      recyclers.execute(task);
+      return true;
+    } catch (RejectedExecutionException e) {
+      return false;
+    }
+  }
+
+  private class RecycleTask implements Runnable {
+    private final DBSession toClose;
+    private final boolean replace;
+
+    RecycleTask(DBSession toClose, boolean replace) {
+      this.toClose = toClose;
+      this.replace = replace;
+    }
+
+    @Override
+    public void run() {
+      try {
+        if (toClose != null) {
+          closeSession(toClose);
+        }
+      } catch (StorageException e) {
+        LOG.error(e);
+      }
+      if (!replace) {
+        return;
+      }
+      try {
+        if (running && sessionPool.size() < highWatermark) {
+          sessionPool.add(initSession());
+        }
+      } catch (StorageException e) {
+        LOG.error(e);
+      } finally {
+        pendingCreations.decrementAndGet();
+      }
+    }
+  }
+
+  @Override
+  public void recordBegin(long startNanos) {
+    beginLatency.recordSince(startNanos);
+  }
+
+  @Override
+  public void recordCommit(long startNanos) {
+    commitLatency.recordSince(startNanos);
+  }
+
+  @Override
+  public void recordRollback(long startNanos) {
+    rollbackLatency.recordSince(startNanos);
+  }
+
+  @Override
   public double getSessionCreationRollingAvg() {
     double avg = 0;
-    for (int i = 0; i < rollingAvg.length; i++) {
-      avg += rollingAvg[i];
+    for (int i = 0; i < rollingAvg.length(); i++) {
+      avg += rollingAvg.get(i);
     }
-    avg = avg / rollingAvg.length;
+    avg = avg / rollingAvg.length();
     return avg;
   }
 
+  @Override
+  public int getInUseSessions() {
+    return inUseSessions.get();
+  }
+
+  @Override
+  public int getRecycleQueueDepth() {
+    return recyclers == null ? 0 :
+        recyclers.getQueue().size() + recyclers.getActiveCount();
+  }
+
+  @Override
+  public long getEmptyPoolWaits() {
+    return emptyPoolWaits.get();
+  }
+
+  @Override
+  public LatencySnapshot getAcquireLatency() {
+    return acquireLatency.snapshot();
+  }
+
+  @Override
+  public LatencySnapshot getCreateLatency() {
+    return createLatency.snapshot();
+  }
+
+  @Override
+  public LatencySnapshot getCloseLatency() {
+    return closeLatency.snapshot();
+  }
+
+  @Override
+  public LatencySnapshot getBeginLatency() {
+    return beginLatency.snapshot();
+  }
+
+  @Override
+  public LatencySnapshot getCommitLatency() {
+    return commitLatency.snapshot();
+  }
+
+  @Override
+  public LatencySnapshot getRollbackLatency() {
+    return rollbackLatency.snapshot();
+  }
+
+  @Override
   public int getTotalSessionsCreated() {
     return sessionsCreated.get();
   }
 
+  @Override
   public int getAvailableSessions() {
     return sessionPool.size();
   }
 
+  /**
+   * @return the fraction of session requests that got back the session the
+   * thread used last, or 0 if the pool is not striped
+   */
   @Override
-  public void run() {
-    while (automaticRefresh) {
-      try {
-        int toGCSize = toGC.size();
+  public double getSessionAffinityHitRate() {
+    if (sessionPool instanceof StripedSessionPool) {
+      StripedSessionPool pool = (StripedSessionPool) sessionPool;
+      return rate(pool.getAffinityHits(), pool.getTakes());
+    }
+    return 0;
+  }
 
-        if (toGCSize > 0) {
-          LOG.debug("Renewing a session(s) " + toGCSize);
-          for (int i = 0; i < toGCSize; i++) {
-            DBSession session = toGC.remove();
-            session.getSession().close();
-          }
-          //System.out.println("CGed " + toGCSize);
+  /**
+   * @return the fraction of session requests that were served from another
+   * stripe, or 0 if the pool is not striped
+   */
+  @Override
+  public double getSessionStealRate() {
+    if (sessionPool instanceof StripedSessionPool) {
+      StripedSessionPool pool = (StripedSessionPool) sessionPool;
+      return rate(pool.getSteals(), pool.getTakes());
+    }
+    return 0;
+  }
 
-          for (int i = 0; i < toGCSize; i++) {
-            sessionPool.add(initSession());
-          }
-          //System.out.println("Created " + toGCSize);
-        }
-        //                for (int i = 0; i < 100; i++) {
-        //                    DBSession session = sessionPool.remove();
-        //                    double percent = (((double) session.getSessionUseCount() / (double) session.getMaxReuseCount()) * (double) 100);
-        //                    // System.out.print(session.getSessionUseCount()+","+session.getMaxReuseCount()+","+percent+" ");
-        //                    if (percent > 80) { // more than 80% used then recyle it
-        //                        session.getSession().close();
-        //                        System.out.println("Recycled a session");
-        //                        //add a new session
-        //                        sessionPool.add(initSession());
-        //                    } else {
-        //                        sessionPool.add(session);
-        //                    }
-        //                }
-        Thread.sleep(5);
-      } catch (NoSuchElementException e) {
-        //System.out.print(".");
-        for (int i = 0; i < 100; i++) {
-          try {
-            sessionPool.add(initSession());
-          } catch (StorageException e1) {
-            LOG.error(e1);
-          }
-        }
-      } catch (InterruptedException ex) {
-        LOG.warn(ex);
-      } catch (StorageException e) {
-        LOG.error(e);
+  /**
+   * @return the time in ms it took until the provider could serve sessions,
+   * or -1 while it is starting
+   */
+  @Override
+  public long getTimeToReady() {
+    return timeToReady;
+  }
+
+  /**
+   * @return the time in ms it took to create the whole initial pool, or -1
+   * while it is still being filled
+   */
+  @Override
+  public long getTimeToFullPool() {
+    return timeToFullPool;
+  }
+
+  @Override
+  public int getClusterConnectionCount() {
+    return connections.length;
+  }
+
+  @Override
+  public int[] getClusterConnectionOpenSessions() {
+    int[] open = new int[connections.length];
+    for (int i = 0; i < connections.length; i++) {
+      open[i] = connections[i].getOpenSessions();
+    }
+    return open;
+  }
+
+  @Override
+  public long[] getClusterConnectionSessionsCreated() {
+    long[] created = new long[connections.length];
+    for (int i = 0; i < connections.length; i++) {
+      created[i] = connections[i].getSessionsCreated();
+    }
+    return created;
+  }
+
+  @Override
+  public int[] getClusterConnectionReconnects() {
+    int[] reconnects = new int[connections.length];
+    for (int i = 0; i < connections.length; i++) {
+      reconnects[i] = connections[i].getReconnects();
+    }
+    return reconnects;
+  }
+
+  private static double rate(long count, long total) {
+    return total == 0 ? 0 : (double) count / total;
+  }
+
+  private static SessionLifetimePolicy createLifetimePolicy(Properties conf,
+      int reuseCount) throws StorageException {
+    String name = conf.getProperty(LIFETIME_POLICY, "random").trim();
+    if (name.equals("random")) {
+      // the reuse count was already validated by the caller
+      return new RandomReuseCountPolicy(reuseCount);
+    }
+    SessionLifetimePolicy policy;
+    if (name.equals("health")) {
+      policy = new HealthBasedLifetimePolicy();
+    } else {
+      try {
+        policy = (SessionLifetimePolicy) Class.forName(name).newInstance();
+      } catch (Exception e) {
+        throw new StorageException(
+            "Could not create session lifetime policy " + name + ": " + e);
       }
     }
+    policy.configure(conf);
+    return policy;
+  }
+
+  private static int getInt(Properties conf, String key, int defaultValue) {
+    String value = conf.getProperty(key);
+    return value == null ? defaultValue : Integer.parseInt(value.trim());
+  }
+
+  private static long getLong(Properties conf, String key, long defaultValue) {
+    String value = conf.getProperty(key);
+    return value == null ? defaultValue : Long.parseLong(value.trim());
   }
 }
@@ -0,0 +1,84 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import io.hops.metadata.ndb.metrics.LatencySnapshot;
+
+/**
+ * Session pool and transaction metrics, published over JMX as
+ * io.hops.metadata.ndb:type=DBSessionProvider. Latencies are in
+ * microseconds.
+ */
+public interface DBSessionProviderMXBean {
+
+  int getAvailableSessions();
+
+  int getInUseSessions();
+
+  /**
+   * @return sessions waiting to be closed or recreated by the recyclers
+   */
+  int getRecycleQueueDepth();
+
+  /**
+   * @return how often a thread found the pool empty and had to wait
+   */
+  long getEmptyPoolWaits();
+
+  int getTotalSessionsCreated();
+
+  double getSessionCreationRollingAvg();
+
+  double getSessionAffinityHitRate();
+
+  double getSessionStealRate();
+
+  long getTimeToReady();
+
+  long getTimeToFullPool();
+
+  int getClusterConnectionCount();
+
+  /**
+   * @return the open sessions of each cluster connection, by connection index
+   */
+  int[] getClusterConnectionOpenSessions();
+
+  /**
+   * @return the sessions created by each cluster connection
+   */
+  long[] getClusterConnectionSessionsCreated();
+
+  /**
+   * @return how many times each cluster connection was reestablished
+   */
+  int[] getClusterConnectionReconnects();
+
+  LatencySnapshot getAcquireLatency();
+
+  LatencySnapshot getCreateLatency();
+
+  LatencySnapshot getCloseLatency();
+
+  LatencySnapshot getBeginLatency();
+
+  LatencySnapshot getCommitLatency();
+
+  LatencySnapshot getRollbackLatency();
+}
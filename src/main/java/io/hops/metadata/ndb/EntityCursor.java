@@ -0,0 +1,54 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.wrapper.HopsResultCursor;
+
+/**
+ * Hands out the rows of a {@link PagedScan} as entities, converting and
+ * releasing one DTO at a time instead of building the full list. Close the
+ * cursor when done, also when stopping early.
+ *
+ * @param <D>
+ *     the DTO type
+ * @param <E>
+ *     the entity type
+ */
+public abstract class EntityCursor<D, E> {
+  private final HopsResultCursor<D> rows;
+
+  protected EntityCursor(HopsResultCursor<D> rows) {
+    this.rows = rows;
+  }
+
+  public boolean hasNext() throws StorageException {
+    return rows.hasNext();
+  }
+
+  public E next() throws StorageException {
+    return convert(rows.next());
+  }
+
+  public void close() throws StorageException {
+    rows.close();
+  }
+
+  protected abstract E convert(D dto) throws StorageException;
+}
@@ -0,0 +1,226 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.mysqlserver.Constants;
+import io.hops.metadata.ndb.mysqlserver.MysqlServerConnector;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Empties the tables of a format through mysqld, io.hops.format.threads
+ * tables at a time, each on its own pooled connection. Tables that are
+ * already empty are skipped, which saves the drop and create an NDB
+ * truncate does.
+ * <p/>
+ * In transactional mode the rows are deleted in chunks with one prepared
+ * statement per table. A chunk starts at io.hops.format.delete.chunk.size
+ * rows, doubles up to io.hops.format.delete.chunk.max while chunks take
+ * less than half a second and halves when one takes longer than a second
+ * or fails, for example because the data nodes ran out of operation
+ * records.
+ * <p/>
+ * Tables referenced by foreign keys can not be truncated, and deleting
+ * from them cascades into the tables that reference them. They are deleted
+ * from in transactional mode one after another, after all other tables are
+ * empty.
+ */
+public class FormatEngine {
+
+  static final Log LOG = LogFactory.getLog(FormatEngine.class);
+
+  public static final String THREADS = "io.hops.format.threads";
+  public static final String DELETE_CHUNK_SIZE =
+      "io.hops.format.delete.chunk.size";
+  public static final String DELETE_CHUNK_MAX =
+      "io.hops.format.delete.chunk.max";
+
+  private static final int MIN_CHUNK_SIZE = 100;
+  private static final long CHUNK_TARGET_TIME = 1000;
+
+  private final boolean transactional;
+  private final int threads;
+  private final int chunkSize;
+  private final int maxChunkSize;
+  private final Set<String> tables = new LinkedHashSet<String>();
+  private final Set<String> referencedTables = new LinkedHashSet<String>();
+
+  FormatEngine(Properties conf, boolean transactional) {
+    this.transactional = transactional;
+    int poolSize = Integer.parseInt(conf.getProperty(
+        Constants.PROPERTY_MYSQL_CONNECTION_POOL_SIZE, "10").trim());
+    this.threads = Math.max(1, Math.min(poolSize,
+        Integer.parseInt(conf.getProperty(THREADS, "4").trim())));
+    this.chunkSize = Math.max(MIN_CHUNK_SIZE,
+        Integer.parseInt(conf.getProperty(DELETE_CHUNK_SIZE, "5000").trim()));
+    this.maxChunkSize = Math.max(chunkSize,
+        Integer.parseInt(conf.getProperty(DELETE_CHUNK_MAX, "20000").trim()));
+  }
+
+  void add(String table) {
+    tables.add(table);
+  }
+
+  /**
+   * Adds a table that is referenced by foreign keys.
+   */
+  void addReferenced(String table) {
+    referencedTables.add(table);
+  }
+
+  void run() throws StorageException, SQLException {
+    long start = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(threads,
+        DBSessionProvider.daemonThreadFactory("Format"));
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(tables.size());
+    try {
+      for (final String table : tables) {
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws StorageException, SQLException {
+            empty(table, transactional);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SQLException) {
+        throw (SQLException) e.getCause();
+      } else if (e.getCause() instanceof StorageException) {
+        throw (StorageException) e.getCause();
+      }
+      throw new StorageException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (String table : referencedTables) {
+      empty(table, true);
+    }
+    LOG.info("Formatted " + (tables.size() + referencedTables.size()) +
+        " tables in " + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  private void empty(String table, boolean delete)
+      throws StorageException, SQLException {
+    MysqlServerConnector connector = MysqlServerConnector.getInstance();
+    long start = System.currentTimeMillis();
+    try {
+      Connection conn = connector.obtainSession();
+      if (isEmpty(conn, table)) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Skipped empty table " + table + " in " +
+              (System.currentTimeMillis() - start) + " ms");
+        }
+        return;
+      }
+      if (delete) {
+        long rows = deleteAll(conn, table);
+        LOG.info("Deleted " + rows + " rows from " + table + " in " +
+            (System.currentTimeMillis() - start) + " ms");
+      } else {
+        PreparedStatement s = conn.prepareStatement("truncate table " + table);
+        try {
+          s.executeUpdate();
+        } finally {
+          s.close();
+        }
+        LOG.info("Truncated " + table + " in " +
+            (System.currentTimeMillis() - start) + " ms");
+      }
+    } finally {
+      connector.closeSession();
+    }
+  }
+
+  private static boolean isEmpty(Connection conn, String table)
+      throws SQLException {
+    PreparedStatement s = conn.prepareStatement(
+        "select exists(select 1 from " + table + ")");
+    try {
+      ResultSet result = s.executeQuery();
+      try {
+        return result.next() && !result.getBoolean(1);
+      } finally {
+        result.close();
+      }
+    } finally {
+      s.close();
+    }
+  }
+
+  private long deleteAll(Connection conn, String table) throws SQLException {
+    PreparedStatement s =
+        conn.prepareStatement("delete from " + table + " limit ?");
+    try {
+      long deleted = 0;
+      int chunk = chunkSize;
+      while (true) {
+        s.setInt(1, chunk);
+        long start = System.currentTimeMillis();
+        int rows;
+        try {
+          rows = s.executeUpdate();
+        } catch (SQLException e) {
+          if (chunk <= MIN_CHUNK_SIZE) {
+            throw e;
+          }
+          chunk = Math.max(MIN_CHUNK_SIZE, chunk / 2);
+          LOG.debug("Deleting from " + table + " failed, retrying with " +
+              chunk + " rows at a time", e);
+          continue;
+        }
+        deleted += rows;
+        if (rows < chunk) {
+          return deleted;
+        }
+        long time = System.currentTimeMillis() - start;
+        if (time < CHUNK_TARGET_TIME / 2) {
+          chunk = Math.min(maxChunkSize, chunk * 2);
+        } else if (time > CHUNK_TARGET_TIME) {
+          chunk = Math.max(MIN_CHUNK_SIZE, chunk / 2);
+        }
+      }
+    } finally {
+      s.close();
+    }
+  }
+}
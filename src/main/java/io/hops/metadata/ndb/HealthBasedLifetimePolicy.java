@@ -0,0 +1,94 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import java.util.Properties;
+
+/**
+ * Keeps sessions for as long as they are healthy. A session is recycled when
+ * <ul>
+ * <li>it had io.hops.session.health.max.errors non transient errors,</li>
+ * <li>more than io.hops.session.health.max.transient.failure.rate of its uses
+ * failed with transient errors, once it has been used
+ * io.hops.session.health.min.uses times,</li>
+ * <li>its recent commit latency is more than
+ * io.hops.session.health.max.commit.latency.drift times its initial commit
+ * latency, or</li>
+ * <li>it is older than io.hops.session.health.max.age ms, if set.</li>
+ * </ul>
+ */
+public class HealthBasedLifetimePolicy implements SessionLifetimePolicy {
+
+  public static final String MAX_ERRORS = "io.hops.session.health.max.errors";
+  public static final String MAX_TRANSIENT_FAILURE_RATE =
+      "io.hops.session.health.max.transient.failure.rate";
+  public static final String MIN_USES = "io.hops.session.health.min.uses";
+  public static final String MAX_COMMIT_LATENCY_DRIFT =
+      "io.hops.session.health.max.commit.latency.drift";
+  public static final String MAX_AGE = "io.hops.session.health.max.age";
+
+  private int maxErrors = 1;
+  private double maxTransientFailureRate = 0.5;
+  private int minUses = 20;
+  private double maxCommitLatencyDrift = 4.0;
+  private long maxAge = 0;
+
+  @Override
+  public void configure(Properties conf) {
+    maxErrors = Integer.parseInt(
+        conf.getProperty(MAX_ERRORS, String.valueOf(maxErrors)).trim());
+    maxTransientFailureRate = Double.parseDouble(
+        conf.getProperty(MAX_TRANSIENT_FAILURE_RATE,
+            String.valueOf(maxTransientFailureRate)).trim());
+    minUses = Integer.parseInt(
+        conf.getProperty(MIN_USES, String.valueOf(minUses)).trim());
+    maxCommitLatencyDrift = Double.parseDouble(
+        conf.getProperty(MAX_COMMIT_LATENCY_DRIFT,
+            String.valueOf(maxCommitLatencyDrift)).trim());
+    maxAge = Long.parseLong(
+        conf.getProperty(MAX_AGE, String.valueOf(maxAge)).trim());
+  }
+
+  @Override
+  public int newSessionReuseCount() {
+    return Integer.MAX_VALUE;
+  }
+
+  @Override
+  public boolean shouldRecycle(DBSession session, boolean error) {
+    SessionHealth health = session.getHealth();
+    if (health.getErrors() >= maxErrors) {
+      return true;
+    }
+    if (error && !health.isLastFailureTransient()) {
+      // the failure was not classified, do not trust the session
+      return true;
+    }
+    int uses = session.getSessionUseCount();
+    if (uses >= minUses &&
+        (double) health.getTransientFailures() / uses >
+            maxTransientFailureRate) {
+      return true;
+    }
+    if (health.getCommitLatencyDrift() > maxCommitLatencyDrift) {
+      return true;
+    }
+    return maxAge > 0 && health.getAge() > maxAge;
+  }
+}
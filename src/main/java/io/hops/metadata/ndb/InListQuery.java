@@ -0,0 +1,115 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
+import io.hops.metadata.ndb.wrapper.HopsQueryShape;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A lookup of the rows whose integer column, usually the partition key, is
+ * in a list of values. {@link ParallelScanner#findIn} splits a long list
+ * into in() scans of bounded size instead of building one scan filter over
+ * the whole list, and runs a short list as one equality scan per value,
+ * each pruned to a single partition, when the scans can run at the same
+ * time. Lookups are meant to be static
+ * constants of the data access classes.
+ *
+ * @param <D>
+ *     the DTO type
+ * @param <E>
+ *     the entity type the rows are converted to
+ */
+public abstract class InListQuery<D, E> {
+  static final String PARAM = "inListParam";
+
+  private final HopsQueryShape<D> equal;
+  private final HopsQueryShape<D> in;
+
+  /**
+   * @param dtoClass
+   *     the DTO of the table
+   * @param field
+   *     the DTO field the values are matched against
+   */
+  protected InListQuery(Class<D> dtoClass, final String field) {
+    this.equal = new HopsQueryShape<D>(dtoClass, field + "Equal") {
+      @Override
+      protected void define(HopsQueryDomainType<D> dobj)
+          throws StorageException {
+        dobj.where(dobj.get(field).equal(dobj.param(PARAM)));
+      }
+    };
+    this.in = new HopsQueryShape<D>(dtoClass, field + "In") {
+      @Override
+      protected void define(HopsQueryDomainType<D> dobj)
+          throws StorageException {
+        dobj.where(dobj.get(field).in(dobj.param(PARAM)));
+      }
+    };
+  }
+
+  protected abstract E convert(D dto) throws StorageException;
+
+  HopsQueryShape<D> getEqualShape() {
+    return equal;
+  }
+
+  HopsQueryShape<D> getInShape() {
+    return in;
+  }
+
+  /**
+   * Splits the distinct values into the groups that are read by one scan
+   * each: one group per value if there are at most prunedMax of them,
+   * otherwise chunks of at most chunkSize values.
+   */
+  static List<List<Integer>> split(int[] values, int prunedMax,
+      int chunkSize) {
+    Set<Integer> distinct = new LinkedHashSet<Integer>(values.length * 2);
+    for (int value : values) {
+      distinct.add(value);
+    }
+    List<List<Integer>> groups = new ArrayList<List<Integer>>();
+    if (distinct.size() <= prunedMax) {
+      for (Integer value : distinct) {
+        groups.add(Collections.singletonList(value));
+      }
+      return groups;
+    }
+    List<Integer> group = new ArrayList<Integer>(chunkSize);
+    for (Integer value : distinct) {
+      group.add(value);
+      if (group.size() == chunkSize) {
+        groups.add(group);
+        group = new ArrayList<Integer>(chunkSize);
+      }
+    }
+    if (!group.isEmpty()) {
+      groups.add(group);
+    }
+    return groups;
+  }
+}
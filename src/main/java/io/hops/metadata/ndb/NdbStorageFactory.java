@@ -18,6 +18,7 @@
  */
 package io.hops.metadata.ndb;
 
+import com.mysql.clusterj.annotation.PersistenceCapable;
 import io.hops.DalStorageFactory;
 import io.hops.StorageConnector;
 import io.hops.exception.StorageInitializtionException;
@@ -179,6 +180,7 @@ public class NdbStorageFactory implements DalStorageFactory {
       ClusterjConnector.getInstance().setConfiguration(conf);
       MysqlServerConnector.getInstance().setConfiguration(conf);
       initDataAccessMap();
+      registerPartitionKeyDTOs();
     } catch (IOException ex) {
       throw new StorageInitializtionException(ex);
     }
@@ -301,6 +303,38 @@ public class NdbStorageFactory implements DalStorageFactory {
     dataAccessMap.put(RepairJobsDataAccess.class, new RepairJobsClusterj());
   }
 
+  /**
+   * Register the persistence capable interface declared by each data access
+   * implementation with the connector, so that partition key hints can be
+   * given for every table without the connector knowing the DTOs.
+   */
+  private void registerPartitionKeyDTOs() {
+    ClusterjConnector connector = ClusterjConnector.getInstance();
+    for (Map.Entry<Class, EntityDataAccess> e : dataAccessMap.entrySet()) {
+      Class dto = findDTO(e.getValue().getClass());
+      if (dto != null) {
+        connector.registerPartitionKeyDTO(e.getKey(), dto);
+      }
+    }
+    // FullRMNodeClusterJ reads the rm node table through several DTOs
+    connector.registerPartitionKeyDTO(FullRMNodeDataAccess.class,
+        RMNodeClusterJ.RMNodeDTO.class);
+  }
+
+  private static Class findDTO(Class cls) {
+    for (Class c = cls; c != null && c != Object.class;
+         c = c.getSuperclass()) {
+      for (Class inner : c.getDeclaredClasses()) {
+        if (inner.isInterface() &&
+            inner.isAnnotationPresent(PersistenceCapable.class) &&
+            !ProjectionDTO.class.isAssignableFrom(inner)) {
+          return inner;
+        }
+      }
+    }
+    return null;
+  }
+
   @Override
   public StorageConnector getConnector() {
     return ClusterjConnector.getInstance();
@@ -0,0 +1,145 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import com.mysql.clusterj.Query;
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.wrapper.HopsPredicate;
+import io.hops.metadata.ndb.wrapper.HopsQuery;
+import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
+import io.hops.metadata.ndb.wrapper.HopsQueryShape;
+import io.hops.metadata.ndb.wrapper.HopsResultCursor;
+import io.hops.metadata.ndb.wrapper.HopsSession;
+
+import java.util.List;
+
+/**
+ * A read of a whole table in pages of bounded queries, ordered on the
+ * primary key so that each page starts after the key of the last row of the
+ * previous one. At most one page of DTOs is held at a time. Scans are meant
+ * to be static constants of the data access classes.
+ * <p/>
+ * The pages are separate queries, a row inserted or deleted meanwhile may or
+ * may not be seen, but no row is seen twice. Unlike a single scan, the read
+ * is not one consistent view of the table, so paging is only offered as
+ * cursors that callers opt into.
+ *
+ * @param <D>
+ *     the DTO type
+ * @param <E>
+ *     the entity type the rows are converted to
+ */
+public abstract class PagedScan<D, E> {
+  static final String PAGE_KEY = "pageKey";
+
+  private final Object lowest;
+  private final String[] keyFields;
+  private final HopsQueryShape<D> first;
+  private final HopsQueryShape<D> after;
+
+  /**
+   * @param dtoClass
+   *     the DTO of the table
+   * @param name
+   *     name of the scan, unique within dtoClass
+   * @param lowest
+   *     a value not above any value of the first key field, it bounds the
+   *     first page so that it is read through the index
+   * @param keyFields
+   *     the DTO fields of the primary key, or of another ordered unique
+   *     index, in index order
+   */
+  protected PagedScan(Class<D> dtoClass, String name, Object lowest,
+      final String... keyFields) {
+    this.lowest = lowest;
+    this.keyFields = keyFields;
+    this.first = new HopsQueryShape<D>(dtoClass, name) {
+      @Override
+      protected void define(HopsQueryDomainType<D> dobj)
+          throws StorageException {
+        dobj.where(dobj.get(keyFields[0]).greaterEqual(
+            dobj.param(PAGE_KEY + 0)));
+      }
+    };
+    this.after = new HopsQueryShape<D>(dtoClass, name + "After") {
+      @Override
+      protected void define(HopsQueryDomainType<D> dobj)
+          throws StorageException {
+        // k0 > p0 or (k0 = p0 and k1 > p1) or ...
+        HopsPredicate pred = null;
+        for (int i = 0; i < keyFields.length; i++) {
+          HopsPredicate term = dobj.get(keyFields[i]).greaterThan(
+              dobj.param(PAGE_KEY + i));
+          for (int j = i - 1; j >= 0; j--) {
+            term = dobj.get(keyFields[j]).equal(dobj.param(PAGE_KEY + j))
+                .and(term);
+          }
+          pred = pred == null ? term : pred.or(term);
+        }
+        // the leading bound lets the data nodes start the index scan there
+        dobj.where(dobj.get(keyFields[0]).greaterEqual(
+            dobj.param(PAGE_KEY + 0)).and(pred));
+      }
+    };
+  }
+
+  /**
+   * @return the values of the key fields of dto, in the order of keyFields
+   */
+  protected abstract Object[] keyOf(D dto);
+
+  protected abstract E convert(D dto) throws StorageException;
+
+  /**
+   * Opens a cursor over the converted rows, read pageSize at a time on
+   * session. The caller must close the cursor, also when stopping early.
+   */
+  public EntityCursor<D, E> open(final HopsSession session, int pageSize) {
+    HopsResultCursor.Pages<D> pages = new HopsResultCursor.Pages<D>() {
+      @Override
+      public List<D> read(D last, int size) throws StorageException {
+        return readPage(session, last, size);
+      }
+    };
+    return new EntityCursor<D, E>(session.openCursor(pages, pageSize)) {
+      @Override
+      protected E convert(D dto) throws StorageException {
+        return PagedScan.this.convert(dto);
+      }
+    };
+  }
+
+  private List<D> readPage(HopsSession session, D last, int size)
+      throws StorageException {
+    HopsQuery<D> query;
+    if (last == null) {
+      query = session.createQuery(first);
+      query.setParameter(PAGE_KEY + 0, lowest);
+    } else {
+      query = session.createQuery(after);
+      Object[] key = keyOf(last);
+      for (int i = 0; i < keyFields.length; i++) {
+        query.setParameter(PAGE_KEY + i, key[i]);
+      }
+    }
+    query.setLimits(0, size);
+    query.setOrdering(Query.Ordering.ASCENDING, keyFields);
+    return query.getResultList();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.wrapper.HopsPredicate;
+import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
+import io.hops.metadata.ndb.wrapper.HopsQueryShape;
+
+/**
+ * A scan that {@link ParallelScanner} can split into ranges of an integer
+ * column, usually the partition key, so that the ranges are read at the same
+ * time on several sessions. Scans are meant to be static constants of the
+ * data access classes.
+ * <p/>
+ * The range column must be the leading column of the index the predicate
+ * is answered from, or of the primary key when the predicate uses no index,
+ * so that each range reads only its own part of it. A predicate on another
+ * indexed column would be answered from that index once per range, and
+ * should stay a single query.
+ *
+ * @param <D>
+ *     the DTO type
+ * @param <E>
+ *     the entity type the rows are converted to
+ */
+public abstract class ParallelScan<D, E> {
+  static final String LOW = "scanLow";
+  static final String HIGH = "scanHigh";
+
+  private final String table;
+  private final String rangeColumn;
+  private final HopsQueryShape<D> whole;
+  private final HopsQueryShape<D> range;
+
+  /**
+   * @param dtoClass
+   *     the DTO of the table
+   * @param name
+   *     name of the scan, unique within dtoClass
+   * @param table
+   *     the table, to find the bounds of rangeColumn
+   * @param rangeColumn
+   *     the integer column the scan is split on, the leading column of the
+   *     index the scan reads
+   * @param rangeField
+   *     the DTO field of rangeColumn
+   */
+  protected ParallelScan(Class<D> dtoClass, String name, String table,
+      String rangeColumn, final String rangeField) {
+    this.table = table;
+    this.rangeColumn = rangeColumn;
+    this.whole = new HopsQueryShape<D>(dtoClass, name) {
+      @Override
+      protected void define(HopsQueryDomainType<D> dobj)
+          throws StorageException {
+        HopsPredicate pred = where(dobj);
+        if (pred != null) {
+          dobj.where(pred);
+        }
+      }
+    };
+    this.range = new HopsQueryShape<D>(dtoClass, name + "Range") {
+      @Override
+      protected void define(HopsQueryDomainType<D> dobj)
+          throws StorageException {
+        HopsPredicate pred = dobj.get(rangeField)
+            .greaterEqual(dobj.param(LOW))
+            .and(dobj.get(rangeField).lessEqual(dobj.param(HIGH)));
+        HopsPredicate scanPred = where(dobj);
+        dobj.where(scanPred == null ? pred : scanPred.and(pred));
+      }
+    };
+  }
+
+  /**
+   * @return the predicate of the scan, or null to read the whole table
+   */
+  protected abstract HopsPredicate where(HopsQueryDomainType<D> dobj)
+      throws StorageException;
+
+  protected abstract E convert(D dto) throws StorageException;
+
+  String getTable() {
+    return table;
+  }
+
+  String getRangeColumn() {
+    return rangeColumn;
+  }
+
+  HopsQueryShape<D> getWholeShape() {
+    return whole;
+  }
+
+  HopsQueryShape<D> getRangeShape() {
+    return range;
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.mysqlserver.MultiAggregate;
+import io.hops.metadata.ndb.wrapper.HopsQuery;
+import io.hops.metadata.ndb.wrapper.HopsQueryShape;
+import io.hops.metadata.ndb.wrapper.HopsSession;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a {@link ParallelScan} as io.hops.scan.parallelism range scans at the
+ * same time, each on its own pooled session, and concatenates the results.
+ * <p/>
+ * The bounds of the range column are read through mysqld and split evenly,
+ * with the first and last range left open so that rows added meanwhile are
+ * not missed. The ranges are read outside of the caller's transaction, with
+ * read committed semantics, so parallel scans suit read only scans such as
+ * failover and block report handling. With a parallelism of one, or while
+ * the caller has an active transaction, the scan runs as a single query on
+ * the caller's session, as before.
+ * <p/>
+ * {@link #findIn} splits an {@link InListQuery} into bounded in() scans.
+ * Outside of a transaction and with io.hops.scan.parallelism above one, a
+ * short list is read as partition pruned equality scans instead, and the
+ * scans run at the same time on pooled sessions. Inside a transaction the
+ * in() scans run one after the other on the caller's session.
+ */
+public class ParallelScanner {
+
+  static final Log LOG = LogFactory.getLog(ParallelScanner.class);
+
+  public static final String PARALLELISM = "io.hops.scan.parallelism";
+  public static final String IN_CHUNK_SIZE = "io.hops.query.in.chunk.size";
+  public static final String IN_PRUNED_MAX = "io.hops.query.in.pruned.max";
+
+  private final ClusterjConnector connector;
+  private final int parallelism;
+  private final int inChunkSize;
+  private final int inPrunedMax;
+  private final ExecutorService executor;
+
+  ParallelScanner(ClusterjConnector connector, Properties conf) {
+    this.connector = connector;
+    this.parallelism = Math.max(1,
+        Integer.parseInt(conf.getProperty(PARALLELISM, "1").trim()));
+    this.inChunkSize = Math.max(1,
+        Integer.parseInt(conf.getProperty(IN_CHUNK_SIZE, "500").trim()));
+    this.inPrunedMax =
+        Integer.parseInt(conf.getProperty(IN_PRUNED_MAX, "8").trim());
+    this.executor = parallelism > 1 ? Executors.newFixedThreadPool(
+        parallelism, DBSessionProvider.daemonThreadFactory("Parallel Scan")) :
+        null;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @param params
+   *     values of the parameters of the scan predicate
+   * @return the converted rows of all ranges
+   */
+  public <D, E> List<E> scan(final ParallelScan<D, E> scan,
+      final Map<String, ?> params) throws StorageException {
+    HopsSession session = connector.obtainSession();
+    if (executor == null || session.currentTransaction().isActive()) {
+      // inside a transaction the scan has to see its locks and writes
+      return read(session, scan, scan.getWholeShape(), params, 0, 0);
+    }
+
+    MultiAggregate bounds = new MultiAggregate();
+    bounds.min(scan.getTable(), scan.getRangeColumn());
+    bounds.max(scan.getTable(), scan.getRangeColumn());
+    int[] minMax = bounds.execute();
+    int min = minMax[0];
+    int max = minMax[1];
+    long span = (long) max - min + 1;
+    int parts = (int) Math.min(parallelism, Math.max(1, span));
+    long step = (span + parts - 1) / parts;
+
+    List<Callable<List<E>>> tasks = new ArrayList<Callable<List<E>>>(parts);
+    for (int i = 0; i < parts; i++) {
+      final int low = i == 0 ? Integer.MIN_VALUE : (int) (min + i * step);
+      final int high = i == parts - 1 ? Integer.MAX_VALUE :
+          (int) (min + (i + 1) * step - 1);
+      tasks.add(new Callable<List<E>>() {
+        @Override
+        public List<E> call() throws StorageException {
+          TransactionContext context = connector.openContext();
+          try {
+            return read(context.getSession(), scan, scan.getRangeShape(),
+                params, low, high);
+          } finally {
+            context.close();
+          }
+        }
+      });
+    }
+    return runAll(tasks);
+  }
+
+  /**
+   * @return the converted rows whose field is one of values
+   */
+  public <D, E> List<E> findIn(final InListQuery<D, E> query, int[] values)
+      throws StorageException {
+    HopsSession session = connector.obtainSession();
+    boolean concurrent =
+        executor != null && !session.currentTransaction().isActive();
+    // one after the other, pruned scans cost a round trip per value
+    List<List<Integer>> groups = InListQuery.split(values,
+        concurrent ? inPrunedMax : 1, inChunkSize);
+    if (!concurrent || groups.size() < 2) {
+      List<E> result = new ArrayList<E>();
+      for (List<Integer> group : groups) {
+        result.addAll(read(session, query, group));
+      }
+      return result;
+    }
+
+    List<Callable<List<E>>> tasks =
+        new ArrayList<Callable<List<E>>>(groups.size());
+    for (final List<Integer> group : groups) {
+      tasks.add(new Callable<List<E>>() {
+        @Override
+        public List<E> call() throws StorageException {
+          TransactionContext context = connector.openContext();
+          try {
+            return read(context.getSession(), query, group);
+          } finally {
+            context.close();
+          }
+        }
+      });
+    }
+    return runAll(tasks);
+  }
+
+  private <E> List<E> runAll(List<Callable<List<E>>> tasks)
+      throws StorageException {
+    List<Future<List<E>>> futures =
+        new ArrayList<Future<List<E>>>(tasks.size());
+    try {
+      for (Callable<List<E>> task : tasks) {
+        futures.add(executor.submit(task));
+      }
+      List<E> result = new ArrayList<E>();
+      for (Future<List<E>> future : futures) {
+        result.addAll(future.get());
+      }
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StorageException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof StorageException) {
+        throw (StorageException) e.getCause();
+      }
+      throw new StorageException(e.getCause());
+    } finally {
+      for (Future<List<E>> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  private static <D, E> List<E> read(HopsSession session,
+      ParallelScan<D, E> scan, HopsQueryShape<D> shape, Map<String, ?> params,
+      int low, int high) throws StorageException {
+    HopsQuery<D> query = session.createQuery(shape);
+    for (Map.Entry<String, ?> param : params.entrySet()) {
+      query.setParameter(param.getKey(), param.getValue());
+    }
+    if (shape == scan.getRangeShape()) {
+      query.setParameter(ParallelScan.LOW, low);
+      query.setParameter(ParallelScan.HIGH, high);
+    }
+    List<D> dtos = query.getResultList();
+    List<E> entities = new ArrayList<E>(dtos.size());
+    for (D dto : dtos) {
+      entities.add(scan.convert(dto));
+    }
+    session.release(dtos);
+    return entities;
+  }
+
+  private static <D, E> List<E> read(HopsSession session,
+      InListQuery<D, E> inList, List<Integer> group) throws StorageException {
+    HopsQuery<D> query;
+    if (group.size() == 1) {
+      query = session.createQuery(inList.getEqualShape());
+      query.setParameter(InListQuery.PARAM, group.get(0));
+    } else {
+      query = session.createQuery(inList.getInShape());
+      query.setParameter(InListQuery.PARAM, group);
+    }
+    List<D> dtos = query.getResultList();
+    List<E> entities = new ArrayList<E>(dtos.size());
+    for (D dto : dtos) {
+      entities.add(inList.convert(dto));
+    }
+    session.release(dtos);
+    return entities;
+  }
+
+  void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+}
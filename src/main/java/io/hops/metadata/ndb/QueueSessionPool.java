@@ -0,0 +1,52 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single shared queue of sessions. This is the default pool.
+ */
+class QueueSessionPool implements SessionPool {
+
+  private final LinkedBlockingQueue<DBSession> sessions =
+      new LinkedBlockingQueue<DBSession>();
+
+  @Override
+  public DBSession poll() {
+    return sessions.poll();
+  }
+
+  @Override
+  public DBSession poll(long timeout, TimeUnit unit)
+      throws InterruptedException {
+    return sessions.poll(timeout, unit);
+  }
+
+  @Override
+  public void add(DBSession session) {
+    sessions.add(session);
+  }
+
+  @Override
+  public int size() {
+    return sessions.size();
+  }
+}
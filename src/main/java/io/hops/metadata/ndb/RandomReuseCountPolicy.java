@@ -0,0 +1,60 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Gives every session a random lifetime of 1 to io.hops.session.reuse.count
+ * uses, and recycles sessions on any error.
+ */
+public class RandomReuseCountPolicy implements SessionLifetimePolicy {
+
+  private final Random rand = new Random(System.currentTimeMillis());
+  private int maxReuseCount;
+
+  public RandomReuseCountPolicy() {
+    this(Integer.MAX_VALUE);
+  }
+
+  public RandomReuseCountPolicy(int maxReuseCount) {
+    this.maxReuseCount = maxReuseCount;
+  }
+
+  @Override
+  public void configure(Properties conf) {
+    String reuseCount = conf.getProperty("io.hops.session.reuse.count");
+    if (reuseCount != null) {
+      maxReuseCount = Integer.parseInt(reuseCount.trim());
+    }
+  }
+
+  @Override
+  public int newSessionReuseCount() {
+    synchronized (rand) {
+      return rand.nextInt(maxReuseCount) + 1;
+    }
+  }
+
+  @Override
+  public boolean shouldRecycle(DBSession session, boolean error) {
+    return error || session.getSessionUseCount() >= session.getMaxReuseCount();
+  }
+}
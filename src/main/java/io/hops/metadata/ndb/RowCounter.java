@@ -0,0 +1,286 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.mysqlserver.MultiAggregate;
+import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The number of rows of a table, or of the rows of a table per value of an
+ * int column, kept in memory while {@link RowCounters} are enabled.
+ * <p/>
+ * A count is read from mysqld on its first use and then follows the deltas
+ * the data access class records in prepare(). A grouped counter, for
+ * columns with few distinct values, reads the counts of all values in one
+ * group by query instead. The counts are approximate:
+ * deltas of transactions that commit while a count is being read may be
+ * lost or counted twice, and upserts recorded as new rows count twice,
+ * until the next reconciliation. When the counters are disabled every
+ * count is read from mysqld. A grouped counter can then reuse the result of
+ * its group by query for io.hops.counters.grouped.max.age ms, so that the
+ * counts of several values read together cost one query. By default it
+ * does not, and the counts are exact.
+ */
+public class RowCounter {
+
+  private static final int WHOLE_TABLE = 0;
+
+  private final String table;
+  private final String column;
+  private final boolean grouped;
+  private final ConcurrentMap<Integer, AtomicLong> counts =
+      new ConcurrentHashMap<Integer, AtomicLong>();
+  private volatile boolean allLoaded = false;
+  private volatile GroupedCounts recent = null;
+
+  /**
+   * Counts all rows of table.
+   */
+  public RowCounter(String table) {
+    this(table, null);
+  }
+
+  /**
+   * Counts the rows of table per value of column.
+   */
+  public RowCounter(String table, String column) {
+    this(table, column, false);
+  }
+
+  /**
+   * Counts the rows of table per value of column.
+   *
+   * @param grouped
+   *     whether the counts of all values are read at once
+   */
+  public RowCounter(String table, String column, boolean grouped) {
+    this.table = table;
+    this.column = column;
+    this.grouped = grouped;
+    RowCounters.register(this);
+  }
+
+  /**
+   * Records a change of the number of rows by the current transaction.
+   */
+  public void add(int delta) {
+    add(WHOLE_TABLE, delta);
+  }
+
+  /**
+   * Records a change of the number of rows with the column equal to key by
+   * the current transaction.
+   */
+  public void add(int key, int delta) {
+    if (delta != 0) {
+      RowCounters.record(this, key, delta);
+    }
+  }
+
+  /**
+   * Records that the current transaction changed rows in a way the deltas
+   * do not capture, such as moving a row from one value of the column to
+   * another. The loaded counts are dropped when the transaction commits.
+   */
+  public void invalidate() throws StorageException {
+    RowCounters.recordReset(this);
+  }
+
+  public int count() throws StorageException {
+    return count(WHOLE_TABLE);
+  }
+
+  public int count(int key) throws StorageException {
+    if (!RowCounters.isEnabled()) {
+      if (grouped && RowCounters.getGroupedMaxAge() > 0) {
+        Integer count = recentCounts().get(key);
+        return count == null ? 0 : count;
+      }
+      return trueCount(key);
+    }
+    AtomicLong count = counts.get(key);
+    if (count == null) {
+      if (grouped) {
+        loadAll();
+      }
+      count = slot(key, grouped ? 0 : trueCount(key));
+    }
+    return (int) Math.max(0, count.get());
+  }
+
+  /**
+   * @return the number of rows per value of the column, for the values that
+   * have rows
+   */
+  public Map<Integer, Integer> counts() throws StorageException {
+    if (!grouped) {
+      return MySQLQueryHelper.countGroupedBy(table, column);
+    } else if (!RowCounters.isEnabled()) {
+      return new TreeMap<Integer, Integer>(recentCounts());
+    }
+    loadAll();
+    Map<Integer, Integer> result = new TreeMap<Integer, Integer>();
+    for (Map.Entry<Integer, AtomicLong> count : counts.entrySet()) {
+      if (count.getValue().get() > 0) {
+        result.put(count.getKey(), (int) count.getValue().get());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of rows with the column below key
+   */
+  public int countLessThan(int key) throws StorageException {
+    if (!grouped || (!RowCounters.isEnabled() &&
+        RowCounters.getGroupedMaxAge() <= 0)) {
+      return MySQLQueryHelper.countWithCriterion(table, column + "<?", key);
+    }
+    long total = 0;
+    for (Map.Entry<Integer, Integer> count : counts().entrySet()) {
+      if (count.getKey() < key) {
+        total += count.getValue();
+      }
+    }
+    return (int) total;
+  }
+
+  /**
+   * Drops the loaded counts, for rows changed in bulk outside of prepare().
+   */
+  public void reset() {
+    allLoaded = false;
+    counts.clear();
+    recent = null;
+  }
+
+  void apply(int key, long delta) {
+    AtomicLong count = counts.get(key);
+    if (count == null && allLoaded) {
+      count = slot(key, 0);
+    }
+    if (count != null) {
+      count.addAndGet(delta);
+    }
+  }
+
+  boolean isGrouped() {
+    return grouped;
+  }
+
+  /**
+   * Replaces the counts of a grouped counter that is loaded by the true
+   * counts.
+   */
+  void reconcileGroups() throws StorageException {
+    if (!allLoaded) {
+      return;
+    }
+    Map<Integer, Integer> trueCounts =
+        MySQLQueryHelper.countGroupedBy(table, column);
+    for (Map.Entry<Integer, AtomicLong> count : counts.entrySet()) {
+      if (!trueCounts.containsKey(count.getKey())) {
+        count.getValue().set(0);
+      }
+    }
+    for (Map.Entry<Integer, Integer> trueCount : trueCounts.entrySet()) {
+      slot(trueCount.getKey(), 0).set(trueCount.getValue());
+    }
+  }
+
+  private void loadAll() throws StorageException {
+    if (allLoaded) {
+      return;
+    }
+    for (Map.Entry<Integer, Integer> count : MySQLQueryHelper
+        .countGroupedBy(table, column).entrySet()) {
+      slot(count.getKey(), count.getValue());
+    }
+    allLoaded = true;
+  }
+
+  /**
+   * @return the result of the last group by query if it is recent enough,
+   * otherwise of a new one
+   */
+  private Map<Integer, Integer> recentCounts() throws StorageException {
+    GroupedCounts last = recent;
+    long now = System.currentTimeMillis();
+    if (last == null || now - last.readAt >= RowCounters.getGroupedMaxAge()) {
+      last = new GroupedCounts(now,
+          MySQLQueryHelper.countGroupedBy(table, column));
+      recent = last;
+    }
+    return last.counts;
+  }
+
+  private AtomicLong slot(int key, long initial) {
+    AtomicLong count = new AtomicLong(initial);
+    AtomicLong existing = counts.putIfAbsent(key, count);
+    return existing != null ? existing : count;
+  }
+
+  /**
+   * Adds the true counts of the loaded slots to aggregate, and the slots to
+   * targets in the same order.
+   */
+  void addTrueCounts(MultiAggregate aggregate, List<AtomicLong> targets) {
+    if (grouped) {
+      return;
+    }
+    for (Map.Entry<Integer, AtomicLong> count : counts.entrySet()) {
+      if (column == null) {
+        aggregate.count(table);
+      } else {
+        aggregate.count(table, column + "=?", count.getKey());
+      }
+      targets.add(count.getValue());
+    }
+  }
+
+  private int trueCount(int key) throws StorageException {
+    if (column == null) {
+      return MySQLQueryHelper.countAll(table);
+    }
+    return MySQLQueryHelper.countWithCriterion(table, column + "=?", key);
+  }
+
+  private static class GroupedCounts {
+    private final long readAt;
+    private final Map<Integer, Integer> counts;
+
+    GroupedCounts(long readAt, Map<Integer, Integer> counts) {
+      this.readAt = readAt;
+      this.counts = counts;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return column == null ? table : table + "." + column;
+  }
+}
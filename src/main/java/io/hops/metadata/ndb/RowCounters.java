@@ -0,0 +1,229 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.mysqlserver.MultiAggregate;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the {@link RowCounter}s of the data access classes up to date.
+ * Enabled with io.hops.counters.enabled=true.
+ * <p/>
+ * The deltas recorded while a transaction is prepared are held by its
+ * {@link DBSession} and applied to the counters only when the transaction
+ * commits. Every io.hops.counters.reconcile.interval ms the loaded counts
+ * are replaced by the true counts, which bounds the drift caused by rows
+ * written outside of prepare(), such as cascading deletes, and by
+ * transactions committing while a count is loaded.
+ * <p/>
+ * While the counters are disabled a grouped counter still answers the
+ * counts of all values from one group by query, reused for
+ * io.hops.counters.grouped.max.age ms.
+ */
+public class RowCounters {
+
+  static final Log LOG = LogFactory.getLog(RowCounters.class);
+
+  public static final String ENABLED = "io.hops.counters.enabled";
+  public static final String RECONCILE_INTERVAL =
+      "io.hops.counters.reconcile.interval";
+  public static final String GROUPED_MAX_AGE =
+      "io.hops.counters.grouped.max.age";
+
+  private static final List<RowCounter> counters =
+      new CopyOnWriteArrayList<RowCounter>();
+  private static volatile boolean enabled = false;
+  private static volatile long groupedMaxAge = 0;
+  private static ScheduledExecutorService reconciler = null;
+
+  static synchronized void configure(Properties conf) {
+    groupedMaxAge = Long.parseLong(
+        conf.getProperty(GROUPED_MAX_AGE, "0").trim());
+    if (!Boolean.parseBoolean(conf.getProperty(ENABLED, "false"))) {
+      return;
+    }
+    long interval = Long.parseLong(
+        conf.getProperty(RECONCILE_INTERVAL, "60000").trim());
+    resetAll();
+    enabled = true;
+    if (interval > 0) {
+      reconciler = Executors.newSingleThreadScheduledExecutor(
+          DBSessionProvider.daemonThreadFactory("Row Counter Reconciler"));
+      reconciler.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          reconcileAll();
+        }
+      }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+    LOG.info("Row counters are enabled");
+  }
+
+  static synchronized void stop() {
+    enabled = false;
+    if (reconciler != null) {
+      reconciler.shutdownNow();
+      reconciler = null;
+    }
+    resetAll();
+  }
+
+  static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return the time in ms the group by counts of a grouped counter are
+   * reused while the counters are disabled, 0 to count exactly on every call
+   */
+  static long getGroupedMaxAge() {
+    return groupedMaxAge;
+  }
+
+  static void register(RowCounter counter) {
+    counters.add(counter);
+  }
+
+  /**
+   * Drops the loaded counts of all counters, for example after the tables
+   * were truncated. They are read again on their next use.
+   */
+  static void resetAll() {
+    for (RowCounter counter : counters) {
+      counter.reset();
+    }
+  }
+
+  /**
+   * Reads the true counts of all loaded slots, in one statement for the
+   * counters that are not grouped.
+   */
+  static void reconcileAll() {
+    MultiAggregate aggregate = new MultiAggregate();
+    List<AtomicLong> targets = new ArrayList<AtomicLong>();
+    try {
+      for (RowCounter counter : counters) {
+        if (counter.isGrouped()) {
+          counter.reconcileGroups();
+        } else {
+          counter.addTrueCounts(aggregate, targets);
+        }
+      }
+      int[] counts = aggregate.execute();
+      for (int i = 0; i < counts.length; i++) {
+        targets.get(i).set(counts[i]);
+      }
+    } catch (StorageException e) {
+      LOG.warn("Could not reconcile the row counts", e);
+      resetAll();
+    }
+  }
+
+  /**
+   * Adds delta to the pending deltas of the transaction of the calling
+   * thread.
+   */
+  static void record(RowCounter counter, int key, int delta) {
+    if (!enabled) {
+      return;
+    }
+    DBSession dbSession = ClusterjConnector.sessions.get();
+    if (dbSession == null) {
+      return;
+    }
+    Map<RowCounter, Map<Integer, Long>> deltas =
+        dbSession.getCounterDeltas();
+    Map<Integer, Long> counterDeltas = deltas.get(counter);
+    if (counterDeltas == null) {
+      if (deltas.containsKey(counter)) {
+        return; // reset on commit
+      }
+      counterDeltas = new HashMap<Integer, Long>();
+      deltas.put(counter, counterDeltas);
+    }
+    Long pending = counterDeltas.get(key);
+    counterDeltas.put(key, pending == null ? delta : pending + delta);
+  }
+
+  /**
+   * Makes the transaction of the calling thread reset counter when it
+   * commits, instead of applying its deltas. Without an active transaction
+   * the change is already committed and counter is reset right away.
+   */
+  static void recordReset(RowCounter counter) throws StorageException {
+    if (!enabled) {
+      counter.reset(); // drops the recent group by counts
+      return;
+    }
+    DBSession dbSession = ClusterjConnector.sessions.get();
+    if (dbSession != null &&
+        dbSession.getSession().currentTransaction().isActive()) {
+      dbSession.getCounterDeltas().put(counter, null);
+    } else {
+      counter.reset();
+    }
+  }
+
+  /**
+   * Applies the pending deltas of a committed transaction.
+   */
+  static void committed(DBSession dbSession) {
+    if (dbSession == null) {
+      return;
+    }
+    Map<RowCounter, Map<Integer, Long>> deltas =
+        dbSession.takeCounterDeltas();
+    if (deltas == null || !enabled) {
+      return;
+    }
+    for (Map.Entry<RowCounter, Map<Integer, Long>> counter : deltas
+        .entrySet()) {
+      if (counter.getValue() == null) {
+        counter.getKey().reset();
+        continue;
+      }
+      for (Map.Entry<Integer, Long> delta : counter.getValue().entrySet()) {
+        counter.getKey().apply(delta.getKey(), delta.getValue());
+      }
+    }
+  }
+
+  /**
+   * Drops the pending deltas of a transaction that began, rolled back or
+   * failed.
+   */
+  static void discard(DBSession dbSession) {
+    if (dbSession != null) {
+      dbSession.takeCounterDeltas();
+    }
+  }
+}
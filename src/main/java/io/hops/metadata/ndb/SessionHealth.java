@@ -0,0 +1,96 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+/**
+ * Health record of one session, read by {@link SessionLifetimePolicy}.
+ * <p/>
+ * A session is only used by one thread at a time and is handed between
+ * threads through the pool, so the fields need no synchronization.
+ */
+public class SessionHealth {
+
+  // commits used to establish the baseline commit latency
+  private static final int BASELINE_COMMITS = 20;
+  private static final double EWMA_WEIGHT = 0.1;
+
+  private final long createdAt = System.currentTimeMillis();
+  private int errors;
+  private int transientFailures;
+  private boolean lastFailureTransient;
+  private int commits;
+  private double baselineCommitLatency;
+  private double commitLatency;
+
+  void recordCommit(long micros) {
+    commits++;
+    if (commits <= BASELINE_COMMITS) {
+      baselineCommitLatency += (micros - baselineCommitLatency) / commits;
+      commitLatency = baselineCommitLatency;
+    } else {
+      commitLatency += EWMA_WEIGHT * (micros - commitLatency);
+    }
+  }
+
+  void recordFailure(boolean transientFailure) {
+    lastFailureTransient = transientFailure;
+    if (transientFailure) {
+      transientFailures++;
+    } else {
+      errors++;
+    }
+  }
+
+  /**
+   * @return the age of the session in ms
+   */
+  public long getAge() {
+    return System.currentTimeMillis() - createdAt;
+  }
+
+  /**
+   * @return the number of non transient errors
+   */
+  public int getErrors() {
+    return errors;
+  }
+
+  public int getTransientFailures() {
+    return transientFailures;
+  }
+
+  public boolean isLastFailureTransient() {
+    return lastFailureTransient;
+  }
+
+  public int getCommits() {
+    return commits;
+  }
+
+  /**
+   * @return the ratio of the recent commit latency to the commit latency of
+   * the first commits of the session, or 1 while the baseline is not known
+   */
+  public double getCommitLatencyDrift() {
+    if (commits <= BASELINE_COMMITS || baselineCommitLatency <= 0) {
+      return 1;
+    }
+    return commitLatency / baselineCommitLatency;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import java.util.Properties;
+
+/**
+ * Decides when a pooled session is closed and replaced by a new one.
+ * <p/>
+ * The policy is chosen with io.hops.session.lifetime.policy: either one of
+ * the built in names, "random" (the default) or "health", or the class name
+ * of an implementation with a public no argument constructor.
+ */
+public interface SessionLifetimePolicy {
+
+  /**
+   * Called once before the first session is created.
+   */
+  void configure(Properties conf);
+
+  /**
+   * @return the maximum number of times a newly created session is used
+   */
+  int newSessionReuseCount();
+
+  /**
+   * Called every time a session is returned to the pool.
+   *
+   * @param session
+   *     the returned session, its use count and health are up to date
+   * @param error
+   *     whether the last use of the session ended with an error
+   * @return true if the session should be closed and replaced
+   */
+  boolean shouldRecycle(DBSession session, boolean error);
+}
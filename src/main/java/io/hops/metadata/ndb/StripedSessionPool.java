@@ -0,0 +1,200 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session pool split into stripes to avoid a single contended queue.
+ * <p/>
+ * Each thread is mapped to one stripe and returns its sessions there. When
+ * taking a session the thread first looks for the session it used last at
+ * either end of its stripe, then for the most recently returned session of
+ * its stripe, and only if the stripe is empty it steals the least recently
+ * used session of another stripe. The session used last is held weakly, so
+ * that sessions closed by the recyclers can be collected.
+ * <p/>
+ * Nothing is shared between the stripes while sessions are available: each
+ * stripe has its own deque and statistics. Only threads that find the whole
+ * pool empty wait on a common monitor, and add() takes it only while some
+ * thread waits.
+ */
+class StripedSessionPool implements SessionPool {
+
+  private static class Stripe {
+    private final LinkedBlockingDeque<DBSession> sessions =
+        new LinkedBlockingDeque<DBSession>();
+    private final AtomicLong takes = new AtomicLong();
+    private final AtomicLong affinityHits = new AtomicLong();
+    private final AtomicLong steals = new AtomicLong();
+  }
+
+  private final Stripe[] stripes;
+  private final ThreadLocal<WeakReference<DBSession>> lastSession =
+      new ThreadLocal<WeakReference<DBSession>>();
+  private final Object emptyPool = new Object();
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  StripedSessionPool(int nbStripes) {
+    if (nbStripes <= 0) {
+      throw new IllegalArgumentException(
+          "Invalid number of session pool stripes " + nbStripes);
+    }
+    stripes = new Stripe[nbStripes];
+    for (int i = 0; i < nbStripes; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  @Override
+  public DBSession poll() {
+    return take();
+  }
+
+  @Override
+  public DBSession poll(long timeout, TimeUnit unit)
+      throws InterruptedException {
+    DBSession session = take();
+    if (session != null) {
+      return session;
+    }
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    // a thread that adds a session after the waiter count went up notifies,
+    // one that added it before is seen by the take below
+    waiters.incrementAndGet();
+    try {
+      synchronized (emptyPool) {
+        while (true) {
+          session = take();
+          if (session != null) {
+            return session;
+          }
+          long left = deadline - System.nanoTime();
+          if (left <= 0) {
+            return null;
+          }
+          TimeUnit.NANOSECONDS.timedWait(emptyPool, left);
+        }
+      }
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  @Override
+  public void add(DBSession session) {
+    stripes[stripeIndex()].sessions.offerFirst(session);
+    if (waiters.get() > 0) {
+      synchronized (emptyPool) {
+        emptyPool.notifyAll();
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      size += stripe.sessions.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return a session of the own stripe, or else of another one, or null if
+   * all stripes are empty
+   */
+  private DBSession take() {
+    int home = stripeIndex();
+    Stripe stripe = stripes[home];
+    LinkedBlockingDeque<DBSession> sessions = stripe.sessions;
+
+    WeakReference<DBSession> lastRef = lastSession.get();
+    DBSession last = lastRef == null ? null : lastRef.get();
+    // the session is usually at the head, where it was returned, unless
+    // other threads of the stripe returned sessions since. Looking only at
+    // both ends keeps the lookup constant time.
+    if (last != null && ((sessions.peekFirst() == last &&
+        sessions.removeFirstOccurrence(last)) ||
+        (sessions.peekLast() == last && sessions.removeLastOccurrence(last)))) {
+      stripe.takes.incrementAndGet();
+      stripe.affinityHits.incrementAndGet();
+      return last;
+    }
+
+    DBSession session = sessions.pollFirst();
+    if (session != null) {
+      stripe.takes.incrementAndGet();
+      return remember(session);
+    }
+    for (int i = 1; i < stripes.length; i++) {
+      session = stripes[(home + i) % stripes.length].sessions.pollLast();
+      if (session != null) {
+        stripe.takes.incrementAndGet();
+        stripe.steals.incrementAndGet();
+        return remember(session);
+      }
+    }
+    return null;
+  }
+
+  private DBSession remember(DBSession session) {
+    WeakReference<DBSession> lastRef = lastSession.get();
+    if (lastRef == null || lastRef.get() != session) {
+      lastSession.set(new WeakReference<DBSession>(session));
+    }
+    return session;
+  }
+
+  private int stripeIndex() {
+    return (int) (Thread.currentThread().getId() % stripes.length);
+  }
+
+  int getStripes() {
+    return stripes.length;
+  }
+
+  long getTakes() {
+    long takes = 0;
+    for (Stripe stripe : stripes) {
+      takes += stripe.takes.get();
+    }
+    return takes;
+  }
+
+  long getAffinityHits() {
+    long hits = 0;
+    for (Stripe stripe : stripes) {
+      hits += stripe.affinityHits.get();
+    }
+    return hits;
+  }
+
+  long getSteals() {
+    long steals = 0;
+    for (Stripe stripe : stripes) {
+      steals += stripe.steals.get();
+    }
+    return steals;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import io.hops.exception.StorageException;
+import io.hops.exception.TransientStorageException;
+import io.hops.metadata.ndb.wrapper.HopsSession;
+import io.hops.metadata.ndb.wrapper.HopsTransaction;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A session and its transaction held by the caller instead of the calling
+ * thread. A context can be passed between threads, for example from one
+ * stage of an asynchronous pipeline to the next, so many transactions can
+ * be in flight on a small thread pool. It must not be used by two threads
+ * at the same time.
+ * <p/>
+ * The data access classes find their session through
+ * {@link ClusterjConnector}, so they have to be called from
+ * {@link #run(TransactionExecutor.Work)}, which binds the session to the
+ * current thread for the duration of the call. Commits and rollbacks made
+ * through the connector while the context is attached end the transaction
+ * but keep the session in the context.
+ * <p/>
+ * The session goes back to the pool on {@link #close()}.
+ */
+public class TransactionContext {
+
+  static final Log LOG = LogFactory.getLog(TransactionContext.class);
+
+  private final SessionSource source;
+  private DBSession dbSession;
+  private boolean error = false;
+
+  TransactionContext(SessionSource source) throws StorageException {
+    this.source = source;
+    this.dbSession = source.getSession();
+    this.dbSession.setContext(this);
+  }
+
+  public HopsSession getSession() throws StorageException {
+    return getDBSession().getSession();
+  }
+
+  public void begin() throws StorageException {
+    HopsTransaction tx = getSession().currentTransaction();
+    if (tx.isActive()) {
+      throw new StorageException("Can not start Tx inside another Tx");
+    }
+    RowCounters.discard(dbSession);
+    long startTime = System.nanoTime();
+    tx.begin();
+    source.recordBegin(startTime);
+  }
+
+  public void commit() throws StorageException {
+    DBSession session = getDBSession();
+    try {
+      HopsTransaction tx = session.getSession().currentTransaction();
+      if (!tx.isActive()) {
+        throw new StorageException("The transaction is not began!");
+      }
+      long startTime = System.nanoTime();
+      tx.commit();
+      source.recordCommit(startTime);
+      session.getHealth().recordCommit((System.nanoTime() - startTime) / 1000);
+      RowCounters.committed(session);
+    } catch (StorageException e) {
+      RowCounters.discard(session);
+      failed(e);
+      throw e;
+    }
+  }
+
+  /**
+   * It rolls back only when the transaction is active.
+   */
+  public void rollback() throws StorageException {
+    DBSession session = getDBSession();
+    try {
+      HopsTransaction tx = session.getSession().currentTransaction();
+      if (tx.isActive()) {
+        long startTime = System.nanoTime();
+        tx.rollback();
+        source.recordRollback(startTime);
+      }
+      RowCounters.discard(session);
+    } catch (StorageException e) {
+      failed(e);
+      throw e;
+    }
+  }
+
+  public boolean isActive() throws StorageException {
+    return getSession().currentTransaction().isActive();
+  }
+
+  /**
+   * Runs work with the session of this context bound to the current thread,
+   * so that the data access classes and the {@link ClusterjConnector}
+   * methods use it.
+   *
+   * @throws StorageException
+   *     if the current thread already has a session
+   */
+  public <T> T run(TransactionExecutor.Work<T> work) throws StorageException {
+    attach();
+    try {
+      return work.perform();
+    } finally {
+      detach();
+    }
+  }
+
+  /**
+   * Binds the session of this context to the current thread until
+   * {@link #detach()} is called.
+   *
+   * @throws StorageException
+   *     if the current thread already has a session
+   */
+  public void attach() throws StorageException {
+    DBSession session = getDBSession();
+    DBSession current = ClusterjConnector.sessions.get();
+    if (current != null && current != session) {
+      throw new StorageException(
+          "The current thread is already bound to another session");
+    }
+    ClusterjConnector.sessions.set(session);
+  }
+
+  public void detach() {
+    if (dbSession != null && ClusterjConnector.sessions.get() == dbSession) {
+      ClusterjConnector.sessions.remove();
+    }
+  }
+
+  /**
+   * Rolls back an active transaction and returns the session to the pool.
+   * Closing a closed context does nothing.
+   */
+  public void close() {
+    if (dbSession == null) {
+      return;
+    }
+    try {
+      rollback();
+    } catch (StorageException e) {
+      LOG.warn("Rollback on close failed", e);
+    }
+    detach();
+    DBSession session = dbSession;
+    dbSession = null;
+    session.setContext(null);
+    source.returnSession(session, error);
+  }
+
+  SessionSource getSource() {
+    return source;
+  }
+
+  public boolean isClosed() {
+    return dbSession == null;
+  }
+
+  void failed(StorageException e) {
+    error = true;
+    if (dbSession != null) {
+      dbSession.getHealth()
+          .recordFailure(e instanceof TransientStorageException);
+    }
+  }
+
+  private DBSession getDBSession() throws StorageException {
+    if (dbSession == null) {
+      throw new StorageException("The transaction context is closed");
+    }
+    return dbSession;
+  }
+}
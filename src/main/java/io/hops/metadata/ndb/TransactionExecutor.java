@@ -0,0 +1,289 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.metrics.MBeans;
+import io.hops.metadata.ndb.wrapper.NdbErrorClassification;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.ObjectName;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runs units of work in a ClusterJ transaction and retries them when the
+ * transaction fails with a temporary NDB error, backing off exponentially
+ * with full jitter between the attempts.
+ * <p/>
+ * Retries are limited by a budget shared by all threads: every retry takes
+ * a token and every successful execution puts back a fraction of one, so a
+ * cluster that stays overloaded sees at most that fraction of extra load
+ * instead of every client retrying.
+ * <p/>
+ * A unit of work may run several times and must not keep state between the
+ * attempts outside of the database.
+ */
+public class TransactionExecutor implements TransactionExecutorMXBean {
+
+  /**
+   * A unit of work executed in a transaction.
+   */
+  public interface Work<T> {
+    T perform() throws StorageException;
+  }
+
+  static final Log LOG = LogFactory.getLog(TransactionExecutor.class);
+
+  public static final String MAX_ATTEMPTS =
+      "io.hops.transaction.retry.max.attempts";
+  public static final String BACKOFF_BASE =
+      "io.hops.transaction.retry.backoff.base";
+  public static final String BACKOFF_MAX =
+      "io.hops.transaction.retry.backoff.max";
+  public static final String RETRY_BUDGET =
+      "io.hops.transaction.retry.budget";
+  public static final String RETRY_BUDGET_RATIO =
+      "io.hops.transaction.retry.budget.ratio";
+  public static final String RETRY_CLASSES =
+      "io.hops.transaction.retry.classes";
+
+  private static final int DEFAULT_MAX_ATTEMPTS = 5;
+  private static final long DEFAULT_BACKOFF_BASE = 10;
+  private static final long DEFAULT_BACKOFF_MAX = 1000;
+  private static final int DEFAULT_RETRY_BUDGET = 100;
+  private static final double DEFAULT_RETRY_BUDGET_RATIO = 0.1;
+  private static final String DEFAULT_RETRY_CLASSES =
+      "TEMPORARY_RESOURCE,NODE_RECOVERY,OVERLOAD,TIMEOUT_EXPIRED";
+  // the budget is kept in thousandths of a token
+  private static final long TOKEN = 1000;
+
+  private final ClusterjConnector connector;
+  private final int maxAttempts;
+  private final long backoffBase;
+  private final long backoffMax;
+  private final long maxBudget;
+  private final long budgetRefill;
+  private final EnumSet<NdbErrorClassification> retryClasses;
+  private final Random random = new Random();
+
+  private final AtomicLong budget;
+  private final AtomicLong executions = new AtomicLong();
+  private final AtomicLong recovered = new AtomicLong();
+  private final AtomicLong exhausted = new AtomicLong();
+  private final AtomicLong budgetRejections = new AtomicLong();
+  private final AtomicLongArray failures =
+      new AtomicLongArray(NdbErrorClassification.values().length);
+  private final AtomicLongArray retries =
+      new AtomicLongArray(NdbErrorClassification.values().length);
+  private ObjectName mbeanName;
+
+  TransactionExecutor(ClusterjConnector connector, Properties conf) {
+    this.connector = connector;
+    this.maxAttempts = Math.max(1, Integer.parseInt(conf.getProperty(
+        MAX_ATTEMPTS, Integer.toString(DEFAULT_MAX_ATTEMPTS)).trim()));
+    this.backoffBase = Long.parseLong(conf.getProperty(BACKOFF_BASE,
+        Long.toString(DEFAULT_BACKOFF_BASE)).trim());
+    this.backoffMax = Long.parseLong(conf.getProperty(BACKOFF_MAX,
+        Long.toString(DEFAULT_BACKOFF_MAX)).trim());
+    this.maxBudget = TOKEN * Integer.parseInt(conf.getProperty(RETRY_BUDGET,
+        Integer.toString(DEFAULT_RETRY_BUDGET)).trim());
+    this.budgetRefill = (long) (TOKEN * Double.parseDouble(
+        conf.getProperty(RETRY_BUDGET_RATIO,
+            Double.toString(DEFAULT_RETRY_BUDGET_RATIO)).trim()));
+    this.budget = new AtomicLong(maxBudget);
+    this.retryClasses = EnumSet.noneOf(NdbErrorClassification.class);
+    for (String c : conf.getProperty(RETRY_CLASSES, DEFAULT_RETRY_CLASSES)
+        .split(",")) {
+      if (!c.trim().isEmpty()) {
+        retryClasses.add(NdbErrorClassification.valueOf(c.trim()));
+      }
+    }
+    mbeanName = MBeans.register("TransactionExecutor", this);
+  }
+
+  /**
+   * Runs work in a transaction and commits it, retrying on the configured
+   * temporary errors. If the calling thread is already in a transaction the
+   * work runs as part of it and is not retried, the outer transaction
+   * decides.
+   *
+   * @return the result of work
+   * @throws StorageException
+   *     the error of the last attempt
+   */
+  public <T> T execute(Work<T> work) throws StorageException {
+    if (connector.isTransactionActive()) {
+      return work.perform();
+    }
+
+    executions.incrementAndGet();
+    for (int attempt = 1; ; attempt++) {
+      // a failed commit already ended the transaction and returned the
+      // session, a rollback would only take a new one from the pool
+      boolean committing = false;
+      try {
+        connector.beginTransaction();
+        T result = work.perform();
+        committing = true;
+        connector.commit();
+        if (attempt > 1) {
+          recovered.incrementAndGet();
+        }
+        refillBudget();
+        return result;
+      } catch (StorageException e) {
+        if (!committing) {
+          rollbackQuietly();
+        }
+        NdbErrorClassification errorClass = NdbErrorClassification.of(e);
+        failures.incrementAndGet(errorClass.ordinal());
+        if (!retryClasses.contains(errorClass)) {
+          throw e;
+        }
+        if (attempt >= maxAttempts) {
+          exhausted.incrementAndGet();
+          throw e;
+        }
+        if (!takeRetryToken()) {
+          budgetRejections.incrementAndGet();
+          exhausted.incrementAndGet();
+          throw e;
+        }
+        retries.incrementAndGet(errorClass.ordinal());
+        LOG.debug("Retrying transaction after " + errorClass + " error, " +
+            "attempt " + attempt + " of " + maxAttempts);
+        backoff(attempt, e);
+      } catch (RuntimeException e) {
+        if (!committing) {
+          rollbackQuietly();
+        }
+        throw e;
+      }
+    }
+  }
+
+  private void rollbackQuietly() {
+    try {
+      connector.rollback();
+    } catch (StorageException e) {
+      LOG.warn("Rollback failed", e);
+    }
+  }
+
+  private void backoff(int attempt, StorageException cause)
+      throws StorageException {
+    long ceiling = backoffBase << Math.min(attempt - 1, 30);
+    if (ceiling <= 0 || ceiling > backoffMax) {
+      ceiling = backoffMax;
+    }
+    long sleep;
+    synchronized (random) {
+      sleep = (long) (random.nextDouble() * ceiling);
+    }
+    if (sleep <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(sleep);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw cause;
+    }
+  }
+
+  private boolean takeRetryToken() {
+    while (true) {
+      long current = budget.get();
+      if (current < TOKEN) {
+        return false;
+      }
+      if (budget.compareAndSet(current, current - TOKEN)) {
+        return true;
+      }
+    }
+  }
+
+  private void refillBudget() {
+    while (true) {
+      long current = budget.get();
+      if (current >= maxBudget) {
+        return;
+      }
+      if (budget.compareAndSet(current,
+          Math.min(maxBudget, current + budgetRefill))) {
+        return;
+      }
+    }
+  }
+
+  void stop() {
+    MBeans.unregister(mbeanName);
+    mbeanName = null;
+  }
+
+  @Override
+  public long getExecutions() {
+    return executions.get();
+  }
+
+  @Override
+  public long getRecoveredExecutions() {
+    return recovered.get();
+  }
+
+  @Override
+  public long getExhaustedExecutions() {
+    return exhausted.get();
+  }
+
+  @Override
+  public long getRetryBudgetRejections() {
+    return budgetRejections.get();
+  }
+
+  @Override
+  public double getRetryBudget() {
+    return (double) budget.get() / TOKEN;
+  }
+
+  @Override
+  public Map<String, Long> getFailuresByErrorClass() {
+    return toMap(failures);
+  }
+
+  @Override
+  public Map<String, Long> getRetriesByErrorClass() {
+    return toMap(retries);
+  }
+
+  private static Map<String, Long> toMap(AtomicLongArray counters) {
+    Map<String, Long> map = new LinkedHashMap<String, Long>();
+    for (NdbErrorClassification c : NdbErrorClassification.values()) {
+      map.put(c.name(), counters.get(c.ordinal()));
+    }
+    return map;
+  }
+}
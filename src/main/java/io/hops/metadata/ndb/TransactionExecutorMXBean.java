@@ -0,0 +1,52 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import java.util.Map;
+
+/**
+ * Retry metrics of the {@link TransactionExecutor}, published over JMX as
+ * io.hops.metadata.ndb:type=TransactionExecutor. The maps are keyed by
+ * {@link io.hops.metadata.ndb.wrapper.NdbErrorClassification} name.
+ */
+public interface TransactionExecutorMXBean {
+
+  long getExecutions();
+
+  /**
+   * @return executions that succeeded after at least one retry
+   */
+  long getRecoveredExecutions();
+
+  /**
+   * @return executions that failed after retrying
+   */
+  long getExhaustedExecutions();
+
+  /**
+   * @return retries refused because the retry budget was empty
+   */
+  long getRetryBudgetRejections();
+
+  double getRetryBudget();
+
+  Map<String, Long> getFailuresByErrorClass();
+
+  Map<String, Long> getRetriesByErrorClass();
+}
@@ -26,8 +26,7 @@ import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.BlockChecksumDataAccess;
 import io.hops.metadata.hdfs.entity.BlockChecksum;
 import io.hops.metadata.ndb.ClusterjConnector;
-import io.hops.metadata.ndb.mysqlserver.HopsSQLExceptionHelper;
-import io.hops.metadata.ndb.mysqlserver.MysqlServerConnector;
+import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
 import io.hops.metadata.ndb.wrapper.HopsPredicate;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
@@ -36,9 +35,6 @@ import io.hops.metadata.ndb.wrapper.HopsSession;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -49,8 +45,8 @@ public class BlockChecksumClusterj
   static final Log LOG = LogFactory.getLog(BlockChecksumClusterj.class);
 
   private ClusterjConnector clusterjConnector = ClusterjConnector.getInstance();
-  private MysqlServerConnector mysqlConnector =
-      MysqlServerConnector.getInstance();
+  private static final String DELETE_BY_INODE_ID =
+      "DELETE FROM " + TABLE_NAME + " WHERE " + INODE_ID + "=?";
 
   @PersistenceCapable(table = TABLE_NAME)
   public interface BlockChecksumDto {
@@ -137,17 +133,7 @@ public class BlockChecksumClusterj
 
   @Override
   public void deleteAll(int inodeId) throws StorageException {
-    final String query =
-        String.format("DELETE FROM block_checksum WHERE %s=%d");
-    try {
-      Connection conn = mysqlConnector.obtainSession();
-      PreparedStatement s = conn.prepareStatement(query);
-      s.executeQuery();
-    } catch (SQLException ex) {
-      throw HopsSQLExceptionHelper.wrap(ex);
-    } finally {
-      mysqlConnector.closeSession();
-    }
+    MySQLQueryHelper.executeUpdate(DELETE_BY_INODE_ID, inodeId);
   }
 
   private void copyState(BlockChecksum blockChecksum, BlockChecksumDto dto) {
@@ -18,7 +18,6 @@
  */
 package io.hops.metadata.ndb.dalimpl.hdfs;
 
-import com.google.common.primitives.Ints;
 import com.mysql.clusterj.annotation.Column;
 import com.mysql.clusterj.annotation.PartitionKey;
 import com.mysql.clusterj.annotation.PersistenceCapable;
@@ -28,12 +27,16 @@ import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.BlockInfoDataAccess;
 import io.hops.metadata.hdfs.entity.BlockInfo;
 import io.hops.metadata.hdfs.entity.BlockLookUp;
+import io.hops.metadata.ndb.BatchReader;
 import io.hops.metadata.ndb.ClusterjConnector;
+import io.hops.metadata.ndb.EntityCursor;
+import io.hops.metadata.ndb.InListQuery;
+import io.hops.metadata.ndb.PagedScan;
 import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
-import io.hops.metadata.ndb.wrapper.HopsPredicate;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
 import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
+import io.hops.metadata.ndb.wrapper.HopsQueryShape;
 import io.hops.metadata.ndb.wrapper.HopsSession;
 
 import java.util.ArrayList;
@@ -97,8 +100,66 @@ public class BlockInfoClusterj
     void setBlockRecoveryId(long recoveryId);
   }
   private ClusterjConnector connector = ClusterjConnector.getInstance();
+
+  private static final HopsQueryShape<BlockInfoDTO> BY_INODE_ID =
+      new HopsQueryShape<BlockInfoDTO>(BlockInfoDTO.class, "byINodeId") {
+        @Override
+        protected void define(HopsQueryDomainType<BlockInfoDTO> dobj)
+            throws StorageException {
+          dobj.where(dobj.get("iNodeId").equal(dobj.param("iNodeParam")));
+        }
+      };
+
+  private static final InListQuery<BlockInfoDTO, BlockInfo> BY_INODE_IDS =
+      new InListQuery<BlockInfoDTO, BlockInfo>(BlockInfoDTO.class, "iNodeId") {
+        @Override
+        protected BlockInfo convert(BlockInfoDTO dto) {
+          return createBlockInfo(dto);
+        }
+      };
+
+  private static final HopsQueryShape<BlockInfoDTO> BY_BLOCK_ID =
+      new HopsQueryShape<BlockInfoDTO>(BlockInfoDTO.class, "byBlockId") {
+        @Override
+        protected void define(HopsQueryDomainType<BlockInfoDTO> dobj)
+            throws StorageException {
+          dobj.where(dobj.get("blockId").equal(dobj.param("blockIdParam")));
+        }
+      };
   private final static int NOT_FOUND_ROW = -1000;
 
+  private static final PagedScan<BlockInfoDTO, BlockInfo> ALL =
+      new PagedScan<BlockInfoDTO, BlockInfo>(BlockInfoDTO.class, "all",
+          Integer.MIN_VALUE, "iNodeId", "blockId") {
+        @Override
+        protected Object[] keyOf(BlockInfoDTO dto) {
+          return new Object[]{dto.getINodeId(), dto.getBlockId()};
+        }
+
+        @Override
+        protected BlockInfo convert(BlockInfoDTO dto) {
+          return createBlockInfo(dto);
+        }
+      };
+
+  private static final BatchReader<BlockInfoDTO, BlockInfo> BATCH_READER =
+      new BatchReader<BlockInfoDTO, BlockInfo>(BlockInfoDTO.class) {
+        @Override
+        protected void markNotFound(BlockInfoDTO dto) {
+          dto.setBlockIndex(NOT_FOUND_ROW);
+        }
+
+        @Override
+        protected boolean isFound(BlockInfoDTO dto) {
+          return dto.getBlockIndex() != NOT_FOUND_ROW;
+        }
+
+        @Override
+        protected BlockInfo convert(BlockInfoDTO dto) {
+          return createBlockInfo(dto);
+        }
+      };
+
   @Override
   public int countAll() throws StorageException {
     return MySQLQueryHelper.countAll(TABLE_NAME);
@@ -107,7 +168,7 @@ public class BlockInfoClusterj
   @Override
   public int countAllCompleteBlocks() throws StorageException {
     return MySQLQueryHelper.countWithCriterion(TABLE_NAME,
-            String.format("%s=%d", BLOCK_UNDER_CONSTRUCTION_STATE, 0));
+            BLOCK_UNDER_CONSTRUCTION_STATE + "=?", 0);
   }
 
   @Override
@@ -196,12 +257,7 @@ public class BlockInfoClusterj
   @Override
   public List<BlockInfo> findByInodeId(int inodeId) throws StorageException {
     HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<BlockInfoDTO> dobj =
-            qb.createQueryDefinition(BlockInfoClusterj.BlockInfoDTO.class);
-    HopsPredicate pred1 = dobj.get("iNodeId").equal(dobj.param("iNodeParam"));
-    dobj.where(pred1);
-    HopsQuery<BlockInfoDTO> query = session.createQuery(dobj);
+    HopsQuery<BlockInfoDTO> query = session.createQuery(BY_INODE_ID);
     query.setParameter("iNodeParam", inodeId);
     List<BlockInfoDTO> dtos = query.getResultList();
     List<BlockInfo> lbis = createBlockInfoList(dtos);
@@ -212,29 +268,12 @@ public class BlockInfoClusterj
   @Override
   public List<BlockInfo> findByInodeIds(int[] inodeIds)
           throws StorageException {
-    HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<BlockInfoClusterj.BlockInfoDTO> dobj =
-            qb.createQueryDefinition(BlockInfoClusterj.BlockInfoDTO.class);
-    HopsPredicate pred1 = dobj.get("iNodeId").in(dobj.param("iNodeParam"));
-    dobj.where(pred1);
-    HopsQuery<BlockInfoClusterj.BlockInfoDTO> query = session.createQuery(dobj);
-    query.setParameter("iNodeParam", Ints.asList(inodeIds));
-
-    List<BlockInfoDTO> biDtos = query.getResultList();
-    List<BlockInfo> lbis = createBlockInfoList(biDtos);
-    session.release(biDtos);
-    return lbis;
+    return connector.getParallelScanner().findIn(BY_INODE_IDS, inodeIds);
   }
 
   public BlockInfo scanByBlockId(long blockId) throws StorageException {
     HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<BlockInfoClusterj.BlockInfoDTO> dobj =
-            qb.createQueryDefinition(BlockInfoClusterj.BlockInfoDTO.class);
-    HopsPredicate pred1 = dobj.get("blockId").equal(dobj.param("blockIdParam"));
-    dobj.where(pred1);
-    HopsQuery<BlockInfoClusterj.BlockInfoDTO> query = session.createQuery(dobj);
+    HopsQuery<BlockInfoDTO> query = session.createQuery(BY_BLOCK_ID);
     query.setParameter("blockIdParam", blockId);
     List<BlockInfoDTO> biDtos = query.getResultList();
     BlockInfo bi = createBlockInfo(biDtos.get(0));
@@ -256,6 +295,16 @@ public class BlockInfoClusterj
     return lbis;
   }
 
+  /**
+   * Paged variant of {@link #findAllBlocks()} that does not build the full
+   * list. Each page is its own query, so unlike findAllBlocks the rows are
+   * not read by one scan. The caller must close the cursor.
+   */
+  public EntityCursor<BlockInfoDTO, BlockInfo> streamAllBlocks()
+      throws StorageException {
+    return ALL.open(connector.obtainSession(), connector.getScanPageSize());
+  }
+
   @Override
   public List<BlockInfo> findBlockInfosByStorageId(int storageId)
           throws StorageException {
@@ -289,20 +338,11 @@ public class BlockInfoClusterj
 
   private List<BlockInfo> readBlockInfoBatch(final HopsSession session,
           final int[] inodeIds, final long[] blockIds) throws StorageException {
-    final List<BlockInfoClusterj.BlockInfoDTO> bdtos =
-            new ArrayList<BlockInfoDTO>();
+    List<Object[]> keys = new ArrayList<Object[]>(blockIds.length);
     for (int i = 0; i < blockIds.length; i++) {
-      Object[] pk = new Object[]{inodeIds[i], blockIds[i]};
-      BlockInfoClusterj.BlockInfoDTO bdto =
-              session.newInstance(BlockInfoClusterj.BlockInfoDTO.class, pk);
-      bdto.setBlockIndex(NOT_FOUND_ROW);
-      bdto = session.load(bdto);
-      bdtos.add(bdto);
+      keys.add(new Object[]{inodeIds[i], blockIds[i]});
     }
-    session.flush();
-    List<BlockInfo> lbis = createBlockInfoList(bdtos);
-    session.release(bdtos);
-    return lbis;
+    return BATCH_READER.read(session, keys);
   }
 
   private List<BlockInfo> createBlockInfoList(
@@ -318,7 +358,8 @@ public class BlockInfoClusterj
     return list;
   }
 
-  private BlockInfo createBlockInfo(BlockInfoClusterj.BlockInfoDTO bDTO) {
+  private static BlockInfo createBlockInfo(
+      BlockInfoClusterj.BlockInfoDTO bDTO) {
     BlockInfo hopBlockInfo =
             new BlockInfo(bDTO.getBlockId(), bDTO.getBlockIndex(),
             bDTO.getINodeId(), bDTO.getNumBytes(), bDTO.getGenerationStamp(),
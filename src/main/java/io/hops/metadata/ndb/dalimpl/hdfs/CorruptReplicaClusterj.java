@@ -18,7 +18,6 @@
  */
 package io.hops.metadata.ndb.dalimpl.hdfs;
 
-import com.google.common.primitives.Ints;
 import com.mysql.clusterj.Query;
 import com.mysql.clusterj.annotation.Column;
 import com.mysql.clusterj.annotation.Index;
@@ -30,6 +29,8 @@ import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.CorruptReplicaDataAccess;
 import io.hops.metadata.hdfs.entity.CorruptReplica;
 import io.hops.metadata.ndb.ClusterjConnector;
+import io.hops.metadata.ndb.InListQuery;
+import io.hops.metadata.ndb.RowCounter;
 import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
 import io.hops.metadata.ndb.wrapper.HopsPredicate;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
@@ -74,10 +75,20 @@ public class CorruptReplicaClusterj implements TablesDef.CorruptReplicaTableDef,
   }
 
   private ClusterjConnector connector = ClusterjConnector.getInstance();
+  private static final RowCounter COUNTER = new RowCounter(TABLE_NAME);
+
+  private static final InListQuery<CorruptReplicaDTO, CorruptReplica>
+      BY_INODE_IDS = new InListQuery<CorruptReplicaDTO, CorruptReplica>(
+      CorruptReplicaDTO.class, "iNodeId") {
+        @Override
+        protected CorruptReplica convert(CorruptReplicaDTO dto) {
+          return createReplica(dto);
+        }
+      };
 
   @Override
   public int countAll() throws StorageException {
-    return MySQLQueryHelper.countAll(TABLE_NAME);
+    return COUNTER.count();
   }
 
   @Override
@@ -105,6 +116,7 @@ public class CorruptReplicaClusterj implements TablesDef.CorruptReplicaTableDef,
       createPersistable(corruptReplica, newInstance);
       changes.add(newInstance);
     }
+    COUNTER.add(newed.size() - removed.size());
     dbSession.deletePersistentAll(deletions);
     dbSession.savePersistentAll(changes);
     dbSession.release(deletions);
@@ -184,21 +196,11 @@ public class CorruptReplicaClusterj implements TablesDef.CorruptReplicaTableDef,
   @Override
   public List<CorruptReplica> findByINodeIds(int[] inodeIds)
       throws StorageException {
-    HopsSession dbSession = connector.obtainSession();
-    HopsQueryBuilder qb = dbSession.getQueryBuilder();
-    HopsQueryDomainType<CorruptReplicaDTO> dobj =
-        qb.createQueryDefinition(CorruptReplicaDTO.class);
-    HopsPredicate pred1 = dobj.get("iNodeId").in(dobj.param("iNodeIdParam"));
-    dobj.where(pred1);
-    HopsQuery<CorruptReplicaDTO> query = dbSession.createQuery(dobj);
-    query.setParameter("iNodeIdParam", Ints.asList(inodeIds));
-    List<CorruptReplicaDTO> dtos = query.getResultList();
-    List<CorruptReplica> crl = createCorruptReplicaList(dtos);
-    dbSession.release(dtos);
-    return crl;
+    return connector.getParallelScanner().findIn(BY_INODE_IDS, inodeIds);
   }
 
-  private CorruptReplica createReplica(CorruptReplicaDTO corruptReplicaTable) {
+  private static CorruptReplica createReplica(
+      CorruptReplicaDTO corruptReplicaTable) {
     return new CorruptReplica(corruptReplicaTable.getBlockId(),
         corruptReplicaTable.getStorageId(), corruptReplicaTable.getINodeId());
   }
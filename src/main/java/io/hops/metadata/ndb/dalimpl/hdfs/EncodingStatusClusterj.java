@@ -30,8 +30,7 @@ import io.hops.metadata.hdfs.entity.EncodingStatus;
 import io.hops.metadata.ndb.ClusterjConnector;
 import io.hops.metadata.ndb.NdbBoolean;
 import io.hops.metadata.ndb.mysqlserver.CountHelper;
-import io.hops.metadata.ndb.mysqlserver.HopsSQLExceptionHelper;
-import io.hops.metadata.ndb.mysqlserver.MysqlServerConnector;
+import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
 import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
@@ -39,8 +38,6 @@ import io.hops.metadata.ndb.wrapper.HopsSession;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -55,8 +52,6 @@ public class EncodingStatusClusterj implements TablesDef.EncodingStatusTableDef,
   static final Log LOG = LogFactory.getLog(EncodingStatusClusterj.class);
 
   private ClusterjConnector clusterjConnector = ClusterjConnector.getInstance();
-  private MysqlServerConnector mysqlConnector =
-      MysqlServerConnector.getInstance();
 
   @PersistenceCapable(table = TABLE_NAME)
   public interface EncodingStatusDto {
@@ -266,8 +261,8 @@ public class EncodingStatusClusterj implements TablesDef.EncodingStatusTableDef,
 
   @Override
   public int countRequestedEncodings() throws StorageException {
-    return CountHelper.countWhere(TABLE_NAME,
-        STATUS + "=" + EncodingStatus.Status.ENCODING_REQUESTED.ordinal());
+    return CountHelper.countWhere(TABLE_NAME, STATUS + "=?",
+        EncodingStatus.Status.ENCODING_REQUESTED.ordinal());
   }
 
   @Override
@@ -284,17 +279,17 @@ public class EncodingStatusClusterj implements TablesDef.EncodingStatusTableDef,
             ", " + PARITY_INODE_ID + ", " + PARITY_FILE_NAME + ", " +
             LOST_BLOCKS + ", " + LOST_PARITY_BLOCKS + ", " + LOST_BLOCKS + "+" +
             LOST_PARITY_BLOCKS + " AS " + LOST_BLOCK_SUM + ", " + REVOKED +
-            " FROM " + TABLE_NAME + " WHERE " + STATUS + "=" +
-            EncodingStatus.Status.REPAIR_REQUESTED.ordinal() + " ORDER BY " +
+            " FROM " + TABLE_NAME + " WHERE " + STATUS + "=? ORDER BY " +
             LOST_BLOCK_SUM + " DESC, " + LOST_BLOCKS + " DESC, " +
-            STATUS_MODIFICATION_TIME + " ASC LIMIT " + limit;
-    return find(query);
+            STATUS_MODIFICATION_TIME + " ASC LIMIT ?";
+    return find(query, EncodingStatus.Status.REPAIR_REQUESTED.ordinal(),
+        limit);
   }
 
   @Override
   public int countRequestedRepairs() throws StorageException {
-    return CountHelper.countWhere(TABLE_NAME,
-        STATUS + "=" + EncodingStatus.Status.REPAIR_REQUESTED.ordinal());
+    return CountHelper.countWhere(TABLE_NAME, STATUS + "=?",
+        EncodingStatus.Status.REPAIR_REQUESTED.ordinal());
   }
 
   @Override
@@ -305,8 +300,8 @@ public class EncodingStatusClusterj implements TablesDef.EncodingStatusTableDef,
 
   @Override
   public int countActiveEncodings() throws StorageException {
-    return CountHelper.countWhere(TABLE_NAME,
-        STATUS + "=" + EncodingStatus.Status.ENCODING_ACTIVE.ordinal());
+    return CountHelper.countWhere(TABLE_NAME, STATUS + "=?",
+        EncodingStatus.Status.ENCODING_ACTIVE.ordinal());
   }
 
   @Override
@@ -317,8 +312,8 @@ public class EncodingStatusClusterj implements TablesDef.EncodingStatusTableDef,
 
   @Override
   public int countEncoded() throws StorageException {
-    return CountHelper.countWhere(TABLE_NAME,
-        STATUS + "=" + EncodingStatus.Status.ENCODED.ordinal());
+    return CountHelper.countWhere(TABLE_NAME, STATUS + "=?",
+        EncodingStatus.Status.ENCODED.ordinal());
   }
 
   @Override
@@ -329,26 +324,25 @@ public class EncodingStatusClusterj implements TablesDef.EncodingStatusTableDef,
 
   @Override
   public int countActiveRepairs() throws StorageException {
-    return CountHelper.countWhere(TABLE_NAME,
-        STATUS + "=" + EncodingStatus.Status.REPAIR_ACTIVE.ordinal());
+    return CountHelper.countWhere(TABLE_NAME, STATUS + "=?",
+        EncodingStatus.Status.REPAIR_ACTIVE.ordinal());
   }
 
   @Override
   public Collection<EncodingStatus> findRequestedParityRepairs(int limit)
       throws StorageException {
     final String queryString =
-        "SELECT * FROM %s WHERE %s=%s AND %s!=%s AND %s!=%s ORDER BY %s ASC LIMIT %s";
-    String query = String.format(STATUS_QUERY, TABLE_NAME, PARITY_STATUS,
-        EncodingStatus.ParityStatus.REPAIR_REQUESTED.ordinal(), STATUS,
-        EncodingStatus.Status.REPAIR_ACTIVE.ordinal(), STATUS,
-        EncodingStatus.Status.REPAIR_FAILED.ordinal(),
-        PARITY_STATUS_MODIFICATION_TIME, limit);
-    return find(query);
+        "SELECT * FROM %s WHERE %s=? AND %s!=? AND %s!=? ORDER BY %s ASC LIMIT ?";
+    String query = String.format(queryString, TABLE_NAME, PARITY_STATUS,
+        STATUS, STATUS, PARITY_STATUS_MODIFICATION_TIME);
+    return find(query, EncodingStatus.ParityStatus.REPAIR_REQUESTED.ordinal(),
+        EncodingStatus.Status.REPAIR_ACTIVE.ordinal(),
+        EncodingStatus.Status.REPAIR_FAILED.ordinal(), limit);
   }
 
   @Override
   public int countRequestedParityRepairs() throws StorageException {
-    return CountHelper.countWhere(TABLE_NAME, PARITY_STATUS + "=" +
+    return CountHelper.countWhere(TABLE_NAME, PARITY_STATUS + "=?",
         EncodingStatus.ParityStatus.REPAIR_REQUESTED.ordinal());
   }
 
@@ -361,7 +355,7 @@ public class EncodingStatusClusterj implements TablesDef.EncodingStatusTableDef,
 
   @Override
   public int countActiveParityRepairs() throws StorageException {
-    return CountHelper.countWhere(TABLE_NAME, PARITY_STATUS + "=" +
+    return CountHelper.countWhere(TABLE_NAME, PARITY_STATUS + "=?",
         EncodingStatus.ParityStatus.REPAIR_ACTIVE.ordinal());
   }
 
@@ -453,59 +447,59 @@ public class EncodingStatusClusterj implements TablesDef.EncodingStatusTableDef,
   }
 
   private static final String STATUS_QUERY =
-      "SELECT * FROM %s WHERE %s=%s ORDER BY %s ASC LIMIT %s";
+      "SELECT * FROM %s WHERE %s=? ORDER BY %s ASC LIMIT ?";
 
   private List<EncodingStatus> findWithParityStatus(int findStatus, long limit)
       throws StorageException {
-    String query = String
-        .format(STATUS_QUERY, TABLE_NAME, PARITY_STATUS, findStatus,
-            PARITY_STATUS_MODIFICATION_TIME, limit);
-    return find(query);
+    String query = String.format(STATUS_QUERY, TABLE_NAME, PARITY_STATUS,
+        PARITY_STATUS_MODIFICATION_TIME);
+    return find(query, findStatus, limit);
   }
 
   private List<EncodingStatus> findWithStatus(int findStatus, long limit)
       throws StorageException {
-    String query = String.format(STATUS_QUERY, TABLE_NAME, STATUS, findStatus,
-        STATUS_MODIFICATION_TIME, limit);
-    return find(query);
-  }
-
-  private List<EncodingStatus> find(String query) throws StorageException {
-    ArrayList<EncodingStatus> resultList;
-    try {
-      Connection conn = mysqlConnector.obtainSession();
-      PreparedStatement s = conn.prepareStatement(query);
-      ResultSet result = s.executeQuery();
-
-      resultList = new ArrayList<EncodingStatus>();
-
-      while (result.next()) {
-        Integer inodeId = result.getInt(INODE_ID);
-        Integer parityInodeId = result.getInt(PARITY_INODE_ID);
-        Integer status = result.getInt(STATUS);
-        String codec = result.getString(CODEC);
-        Short targetReplication = result.getShort(TARGET_REPLICATION);
-        Long statusModificationTime = result.getLong(STATUS_MODIFICATION_TIME);
-        Integer parityStatus = result.getInt(PARITY_STATUS);
-        Long parityStatusModificationTime =
-            result.getLong(PARITY_STATUS_MODIFICATION_TIME);
-        String parityFileName = result.getString(PARITY_FILE_NAME);
-        int lostBlocks = result.getInt(LOST_BLOCKS);
-        int lostParityBlocks = result.getInt(LOST_PARITY_BLOCKS);
-        Boolean revoked = NdbBoolean.convert(result.getByte(REVOKED));
-
-        EncodingPolicy policy = new EncodingPolicy(codec, targetReplication);
-        resultList.add(new EncodingStatus(inodeId, parityInodeId,
-            EncodingStatus.Status.values()[status],
-            EncodingStatus.ParityStatus.values()[parityStatus], policy,
-            statusModificationTime, parityStatusModificationTime,
-            parityFileName, lostBlocks, lostParityBlocks, revoked));
-      }
-    } catch (SQLException ex) {
-      throw HopsSQLExceptionHelper.wrap(ex);
-    } finally {
-      mysqlConnector.closeSession();
-    }
-    return resultList;
+    String query = String.format(STATUS_QUERY, TABLE_NAME, STATUS,
+        STATUS_MODIFICATION_TIME);
+    return find(query, findStatus, limit);
+  }
+
+  private List<EncodingStatus> find(String query, Object... params)
+      throws StorageException {
+    return MySQLQueryHelper.execute(query,
+        new MySQLQueryHelper.ResultSetHandler<List<EncodingStatus>>() {
+          @Override
+          public List<EncodingStatus> handle(ResultSet result)
+              throws SQLException {
+            List<EncodingStatus> resultList = new ArrayList<EncodingStatus>();
+            while (result.next()) {
+              resultList.add(createHopEncoding(result));
+            }
+            return resultList;
+          }
+        }, params);
+  }
+
+  private static EncodingStatus createHopEncoding(ResultSet result)
+      throws SQLException {
+    Integer inodeId = result.getInt(INODE_ID);
+    Integer parityInodeId = result.getInt(PARITY_INODE_ID);
+    Integer status = result.getInt(STATUS);
+    String codec = result.getString(CODEC);
+    Short targetReplication = result.getShort(TARGET_REPLICATION);
+    Long statusModificationTime = result.getLong(STATUS_MODIFICATION_TIME);
+    Integer parityStatus = result.getInt(PARITY_STATUS);
+    Long parityStatusModificationTime =
+        result.getLong(PARITY_STATUS_MODIFICATION_TIME);
+    String parityFileName = result.getString(PARITY_FILE_NAME);
+    int lostBlocks = result.getInt(LOST_BLOCKS);
+    int lostParityBlocks = result.getInt(LOST_PARITY_BLOCKS);
+    Boolean revoked = NdbBoolean.convert(result.getByte(REVOKED));
+
+    EncodingPolicy policy = new EncodingPolicy(codec, targetReplication);
+    return new EncodingStatus(inodeId, parityInodeId,
+        EncodingStatus.Status.values()[status],
+        EncodingStatus.ParityStatus.values()[parityStatus], policy,
+        statusModificationTime, parityStatusModificationTime,
+        parityFileName, lostBlocks, lostParityBlocks, revoked);
   }
 }
@@ -18,7 +18,6 @@
  */
 package io.hops.metadata.ndb.dalimpl.hdfs;
 
-import com.google.common.primitives.Ints;
 import com.mysql.clusterj.annotation.Column;
 import com.mysql.clusterj.annotation.Index;
 import com.mysql.clusterj.annotation.PartitionKey;
@@ -29,7 +28,8 @@ import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.ExcessReplicaDataAccess;
 import io.hops.metadata.hdfs.entity.ExcessReplica;
 import io.hops.metadata.ndb.ClusterjConnector;
-import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
+import io.hops.metadata.ndb.InListQuery;
+import io.hops.metadata.ndb.RowCounter;
 import io.hops.metadata.ndb.wrapper.HopsPredicate;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
@@ -69,10 +69,20 @@ public class ExcessReplicaClusterj
   }
 
   private ClusterjConnector connector = ClusterjConnector.getInstance();
+  private static final RowCounter COUNTER = new RowCounter(TABLE_NAME);
+
+  private static final InListQuery<ExcessReplicaDTO, ExcessReplica>
+      BY_INODE_IDS = new InListQuery<ExcessReplicaDTO, ExcessReplica>(
+      ExcessReplicaDTO.class, "iNodeId") {
+        @Override
+        protected ExcessReplica convert(ExcessReplicaDTO dto) {
+          return createReplica(dto);
+        }
+      };
 
   @Override
   public int countAll() throws StorageException {
-    return MySQLQueryHelper.countAll(TABLE_NAME);
+    return COUNTER.count();
   }
 
   @Override
@@ -95,6 +105,7 @@ public class ExcessReplicaClusterj
       createPersistable(exReplica, newInstance);
       deletions.add(newInstance);
     }
+    COUNTER.add(newed.size() - removed.size());
     session.deletePersistentAll(deletions);
     session.savePersistentAll(changes);
     session.release(deletions);
@@ -158,19 +169,7 @@ public class ExcessReplicaClusterj
   @Override
   public List<ExcessReplica> findExcessReplicaByINodeIds(int[] inodeIds)
       throws StorageException {
-    HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<ExcessReplicaDTO> qdt =
-        qb.createQueryDefinition(ExcessReplicaDTO.class);
-    HopsPredicate pred1 = qdt.get("iNodeId").in(qdt.param("iNodeIdParam"));
-    qdt.where(pred1);
-    HopsQuery<ExcessReplicaDTO> query = session.createQuery(qdt);
-    query.setParameter("iNodeIdParam", Ints.asList(inodeIds));
-    
-    List<ExcessReplicaDTO> dtos = query.getResultList();
-    List<ExcessReplica> ler = createList(dtos);
-    session.release(dtos);
-    return ler;
+    return connector.getParallelScanner().findIn(BY_INODE_IDS, inodeIds);
   }
 
   @Override
@@ -195,6 +194,7 @@ public class ExcessReplicaClusterj
   public void removeAll() throws StorageException {
     HopsSession session = connector.obtainSession();
     session.deletePersistentAll(ExcessReplicaDTO.class);
+    COUNTER.invalidate();
   }
 
   private List<ExcessReplica> createList(List<ExcessReplicaDTO> list) {
@@ -205,7 +205,7 @@ public class ExcessReplicaClusterj
     return result;
   }
 
-  private ExcessReplica createReplica(ExcessReplicaDTO exReplicaTable) {
+  private static ExcessReplica createReplica(ExcessReplicaDTO exReplicaTable) {
     return new ExcessReplica(exReplicaTable.getStorageId(),
         exReplicaTable.getBlockId(), exReplicaTable.getINodeId());
   }
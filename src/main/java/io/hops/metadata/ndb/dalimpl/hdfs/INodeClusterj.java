@@ -29,19 +29,20 @@ import io.hops.metadata.hdfs.dal.INodeDataAccess;
 import io.hops.metadata.hdfs.entity.INode;
 import io.hops.metadata.hdfs.entity.INodeIdentifier;
 import io.hops.metadata.hdfs.entity.ProjectedINode;
+import io.hops.metadata.ndb.BatchReader;
 import io.hops.metadata.ndb.ClusterjConnector;
+import io.hops.metadata.ndb.EntityCursor;
 import io.hops.metadata.ndb.NdbBoolean;
-import io.hops.metadata.ndb.mysqlserver.HopsSQLExceptionHelper;
+import io.hops.metadata.ndb.PagedScan;
+import io.hops.metadata.ndb.ProjectionDTO;
 import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
-import io.hops.metadata.ndb.mysqlserver.MysqlServerConnector;
 import io.hops.metadata.ndb.wrapper.HopsPredicate;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
 import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
+import io.hops.metadata.ndb.wrapper.HopsQueryShape;
 import io.hops.metadata.ndb.wrapper.HopsSession;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -159,10 +160,110 @@ public class INodeClusterj implements TablesDef.INodeTableDef, INodeDataAccess<I
     void setSize(long size);
   }
 
+  /**
+   * Projection of the inode table on the columns that identify an inode.
+   */
+  @PersistenceCapable(table = TABLE_NAME)
+  @PartitionKey(column = PARENT_ID)
+  public interface InodeIdentifierDTO extends ProjectionDTO {
+    @Column(name = ID)
+    @Index(name = "inode_idx")
+    int getId();
+    void setId(int id);
+
+    @PrimaryKey
+    @Column(name = NAME)
+    String getName();
+    void setName(String name);
+
+    @PrimaryKey
+    @Column(name = PARENT_ID)
+    @Index(name = "pidex")
+    int getParentId();
+    void setParentId(int parentid);
+
+    @Column(name = HEADER)
+    long getHeader();
+    void setHeader(long header);
+  }
+
   private ClusterjConnector connector = ClusterjConnector.getInstance();
-  private MysqlServerConnector mysqlConnector =
-      MysqlServerConnector.getInstance();
+
+  private static final HopsQueryShape<InodeDTO> BY_ID =
+      new HopsQueryShape<InodeDTO>(InodeDTO.class, "byId") {
+        @Override
+        protected void define(HopsQueryDomainType<InodeDTO> dobj)
+            throws StorageException {
+          dobj.where(dobj.get("id").equal(dobj.param("idParam")));
+        }
+      };
+
+  private static final HopsQueryShape<InodeDTO> BY_PARENT_ID =
+      new HopsQueryShape<InodeDTO>(InodeDTO.class, "byParentId") {
+        @Override
+        protected void define(HopsQueryDomainType<InodeDTO> dobj)
+            throws StorageException {
+          dobj.where(dobj.get("parentId").equal(dobj.param("parentIDParam")));
+        }
+      };
+
+  private static final HopsQueryShape<InodeIdentifierDTO> FIRST_CHILD =
+      new HopsQueryShape<InodeIdentifierDTO>(InodeIdentifierDTO.class,
+          "firstChild") {
+        @Override
+        protected void define(HopsQueryDomainType<InodeIdentifierDTO> dobj)
+            throws StorageException {
+          dobj.where(dobj.get("parentId").equal(dobj.param("parentIDParam")));
+        }
+      };
+
+  private static final HopsQueryShape<InodeIdentifierDTO> FILES_IN_RANGE =
+      new HopsQueryShape<InodeIdentifierDTO>(InodeIdentifierDTO.class,
+          "filesInRange") {
+        @Override
+        protected void define(HopsQueryDomainType<InodeIdentifierDTO> dobj)
+            throws StorageException {
+          HopsPredicate pred =
+              dobj.get("header").equal(dobj.param("isDirParam"));
+          HopsPredicate pred2 = dobj.get("id")
+              .between(dobj.param("startId"), dobj.param("endId"));
+          dobj.where(pred.not().and(pred2));
+        }
+      };
+
   private final static int NOT_FOUND_ROW = -1000;
+
+  private static final BatchReader<InodeDTO, INode> BATCH_READER =
+      new BatchReader<InodeDTO, INode>(InodeDTO.class) {
+        @Override
+        protected void markNotFound(InodeDTO dto) {
+          dto.setId(NOT_FOUND_ROW);
+        }
+
+        @Override
+        protected boolean isFound(InodeDTO dto) {
+          return dto.getId() != NOT_FOUND_ROW;
+        }
+
+        @Override
+        protected INode convert(InodeDTO dto) {
+          return createInode(dto);
+        }
+      };
+
+  private static final PagedScan<InodeDTO, INode> ALL =
+      new PagedScan<InodeDTO, INode>(InodeDTO.class, "all", Integer.MIN_VALUE,
+          "parentId", "name") {
+        @Override
+        protected Object[] keyOf(InodeDTO dto) {
+          return new Object[]{dto.getParentId(), dto.getName()};
+        }
+
+        @Override
+        protected INode convert(InodeDTO dto) {
+          return createInode(dto);
+        }
+      };
   
   @Override
   public void prepare(Collection<INode> removed, Collection<INode> newEntries,
@@ -201,13 +302,7 @@ public class INodeClusterj implements TablesDef.INodeTableDef, INodeDataAccess<I
     //System.out.println("*** pruneScanfindInodeById, Id "+inodeId);
     HopsSession session = connector.obtainSession();
 
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<InodeDTO> dobj =
-        qb.createQueryDefinition(InodeDTO.class);
-    HopsPredicate pred1 = dobj.get("id").equal(dobj.param("idParam"));
-    dobj.where(pred1);
-
-    HopsQuery<InodeDTO> query = session.createQuery(dobj);
+    HopsQuery<InodeDTO> query = session.createQuery(BY_ID);
     query.setParameter("idParam", inodeId);
 
     List<InodeDTO> results = query.getResultList();
@@ -231,13 +326,7 @@ public class INodeClusterj implements TablesDef.INodeTableDef, INodeDataAccess<I
     //System.out.println("*** indexScanFindInodesByParentId ");
     HopsSession session = connector.obtainSession();
 
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<InodeDTO> dobj =
-        qb.createQueryDefinition(InodeDTO.class);
-    HopsPredicate pred1 =
-        dobj.get("parentId").equal(dobj.param("parentIDParam"));
-    dobj.where(pred1);
-    HopsQuery<InodeDTO> query = session.createQuery(dobj);
+    HopsQuery<InodeDTO> query = session.createQuery(BY_PARENT_ID);
     query.setParameter("parentIDParam", parentId);
 
     List<InodeDTO> results = query.getResultList();
@@ -250,35 +339,31 @@ public class INodeClusterj implements TablesDef.INodeTableDef, INodeDataAccess<I
   public List<ProjectedINode> findInodesForSubtreeOperationsWithWriteLock(
       int parentId) throws StorageException {
     final String query = String.format(
-        "SELECT %s, %s, %s, %s, %s, %s, %s, %s, %s, %s, %s FROM %s WHERE %s=%d FOR UPDATE ",
+        "SELECT %s, %s, %s, %s, %s, %s, %s, %s, %s, %s, %s FROM %s WHERE %s=? FOR UPDATE ",
         ID, NAME, PARENT_ID, PERMISSION, HEADER, SYMLINK, QUOTA_ENABLED,
         UNDER_CONSTRUCTION, SUBTREE_LOCKED, SUBTREE_LOCK_OWNER, SIZE, TABLE_NAME,
-        PARENT_ID, parentId);
-    ArrayList<ProjectedINode> resultList;
-    try {
-      Connection conn = mysqlConnector.obtainSession();
-      PreparedStatement s = conn.prepareStatement(query);
-      ResultSet result = s.executeQuery();
-      resultList = new ArrayList<ProjectedINode>();
-
-      while (result.next()) {
-        resultList.add(
-            new ProjectedINode(result.getInt(ID), result.getInt(PARENT_ID),
-                result.getString(NAME), result.getBytes(PERMISSION),
-                result.getLong(HEADER),
-                result.getString(SYMLINK) == null ? false : true,
-                result.getBoolean(QUOTA_ENABLED),
-                result.getBoolean(UNDER_CONSTRUCTION),
-                result.getBoolean(SUBTREE_LOCKED),
-                result.getLong(SUBTREE_LOCK_OWNER),
-                result.getLong(SIZE)));
-      }
-    } catch (SQLException ex) {
-      throw HopsSQLExceptionHelper.wrap(ex);
-    } finally {
-      mysqlConnector.closeSession();
-    }
-    return resultList;
+        PARENT_ID);
+    return MySQLQueryHelper.execute(query,
+        new MySQLQueryHelper.ResultSetHandler<List<ProjectedINode>>() {
+          @Override
+          public List<ProjectedINode> handle(ResultSet result)
+              throws SQLException {
+            List<ProjectedINode> resultList = new ArrayList<ProjectedINode>();
+            while (result.next()) {
+              resultList.add(new ProjectedINode(result.getInt(ID),
+                      result.getInt(PARENT_ID),
+                      result.getString(NAME), result.getBytes(PERMISSION),
+                      result.getLong(HEADER),
+                      result.getString(SYMLINK) == null ? false : true,
+                      result.getBoolean(QUOTA_ENABLED),
+                      result.getBoolean(UNDER_CONSTRUCTION),
+                      result.getBoolean(SUBTREE_LOCKED),
+                      result.getLong(SUBTREE_LOCK_OWNER),
+                      result.getLong(SIZE)));
+            }
+            return resultList;
+          }
+        }, parentId);
   }
 
   @Override
@@ -303,41 +388,26 @@ public class INodeClusterj implements TablesDef.INodeTableDef, INodeDataAccess<I
   @Override
   public List<INode> getINodesPkBatched(String[] names, int[] parentIds)
       throws StorageException {
-    HopsSession session = connector.obtainSession();
-    List<InodeDTO> dtos = new ArrayList<InodeDTO>();
+    List<Object[]> keys = new ArrayList<Object[]>(names.length);
     for (int i = 0; i < names.length; i++) {
-      InodeDTO dto = session
-          .newInstance(InodeDTO.class, new Object[]{parentIds[i], names[i]});
-      dto.setId(NOT_FOUND_ROW);
-      dto = session.load(dto);
-      dtos.add(dto);
+      keys.add(new Object[]{parentIds[i], names[i]});
     }
-    session.flush();
-    List<INode> inodeList = createInodeList(dtos);
-    session.release(dtos);
-    return inodeList;
+    return BATCH_READER.read(connector.obtainSession(), keys);
   }
   
   @Override
   public List<INodeIdentifier> getAllINodeFiles(long startId, long endId)
       throws StorageException {
     HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<InodeDTO> dobj =
-        qb.createQueryDefinition(InodeDTO.class);
-    HopsPredicate pred = dobj.get("header").equal(dobj.param("isDirParam"));
-    HopsPredicate pred2 =
-        dobj.get("id").between(dobj.param("startId"), dobj.param("endId"));
-    dobj.where(pred.not().and(pred2));
-    HopsQuery<InodeDTO> query = session.createQuery(dobj);
+    HopsQuery<InodeIdentifierDTO> query = session.createQuery(FILES_IN_RANGE);
     query.setParameter("isDirParam", 0L);
     //FIXME: InodeId is integer
     //startId is inclusive and endId exclusive
     query.setParameter("startId", (int) startId);
     query.setParameter("endId", (int) (endId - 1));
-    List<InodeDTO> dtos = query.getResultList();
+    List<InodeIdentifierDTO> dtos = query.getResultList();
     List<INodeIdentifier> res = new ArrayList<INodeIdentifier>();
-    for (InodeDTO dto : dtos) {
+    for (InodeIdentifierDTO dto : dtos) {
       res.add(
           new INodeIdentifier(dto.getId(), dto.getParentId(), dto.getName()));
     }
@@ -350,14 +420,14 @@ public class INodeClusterj implements TablesDef.INodeTableDef, INodeDataAccess<I
   public boolean haveFilesWithIdsBetween(long startId, long endId)
       throws StorageException {
     return MySQLQueryHelper.exists(TABLE_NAME, String
-        .format("%s<>0 and %s " + "between %d and %d", HEADER, ID, startId,
-            (endId - 1)));
+        .format("%s<>0 and %s " + "between ? and ?", HEADER, ID), startId,
+        endId - 1);
   }
   
   @Override
   public boolean haveFilesWithIdsGreaterThan(long id) throws StorageException {
     return MySQLQueryHelper.exists(TABLE_NAME,
-        String.format("%s<>0 and " + "%s>%d", HEADER, ID, id));
+        String.format("%s<>0 and " + "%s>?", HEADER, ID), id);
   }
   
   @Override
@@ -386,22 +456,26 @@ public class INodeClusterj implements TablesDef.INodeTableDef, INodeDataAccess<I
         session.createQuery(qb.createQueryDefinition(InodeDTO.class));
     return createInodeList(query.getResultList());
   }
+
+  /**
+   * Paged variant of {@link #allINodes()} that does not build the full list.
+   * Each page is its own query, so unlike allINodes the rows are not read by
+   * one scan. The caller must close the cursor.
+   */
+  public EntityCursor<InodeDTO, INode> streamAllINodes()
+      throws StorageException {
+    return ALL.open(connector.obtainSession(), connector.getScanPageSize());
+  }
   
   @Override
   public boolean hasChildren(int parentId) throws StorageException {
     HopsSession session = connector.obtainSession();
 
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<InodeDTO> dobj =
-        qb.createQueryDefinition(InodeDTO.class);
-    HopsPredicate pred1 =
-        dobj.get("parentId").equal(dobj.param("parentIDParam"));
-    dobj.where(pred1);
-    HopsQuery<InodeDTO> query = session.createQuery(dobj);
+    HopsQuery<InodeIdentifierDTO> query = session.createQuery(FIRST_CHILD);
     query.setParameter("parentIDParam", parentId);
     query.setLimits(0, 1);
 
-    List<InodeDTO> results = query.getResultList();
+    List<InodeIdentifierDTO> results = query.getResultList();
     if(results.isEmpty()){
       return false;
     }else{
@@ -421,7 +495,7 @@ public class INodeClusterj implements TablesDef.INodeTableDef, INodeDataAccess<I
     return inodes;
   }
 
-  private INode createInode(InodeDTO persistable) {
+  private static INode createInode(InodeDTO persistable) {
     INode node = new INode(persistable.getId(), persistable.getName(),
         persistable.getParentId(),
         NdbBoolean.convert(persistable.getQuotaEnabled()),
@@ -458,11 +532,4 @@ public class INodeClusterj implements TablesDef.INodeTableDef, INodeDataAccess<I
     persistable.setSize(inode.getSize());
   }
 
-  private void explain(HopsQuery<InodeDTO> query) {
-    //      Map<String,Object> map = query.explain();
-    //      System.out.println("Explain");
-    //      System.out.println("keys " +Arrays.toString(map.keySet().toArray()));
-    //      System.out.println("values "+ Arrays.toString(map.values().toArray()));
-  }
-
 }
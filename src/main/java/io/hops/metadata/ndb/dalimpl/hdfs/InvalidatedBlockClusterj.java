@@ -18,7 +18,6 @@
  */
 package io.hops.metadata.ndb.dalimpl.hdfs;
 
-import com.google.common.primitives.Ints;
 import com.mysql.clusterj.annotation.Column;
 import com.mysql.clusterj.annotation.Index;
 import com.mysql.clusterj.annotation.PartitionKey;
@@ -28,19 +27,24 @@ import io.hops.exception.StorageException;
 import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.InvalidateBlockDataAccess;
 import io.hops.metadata.hdfs.entity.InvalidatedBlock;
+import io.hops.metadata.ndb.BatchReader;
 import io.hops.metadata.ndb.ClusterjConnector;
+import io.hops.metadata.ndb.EntityCursor;
+import io.hops.metadata.ndb.InListQuery;
+import io.hops.metadata.ndb.PagedScan;
+import io.hops.metadata.ndb.RowCounter;
 import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
 import io.hops.metadata.ndb.wrapper.HopsPredicate;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
 import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
 import io.hops.metadata.ndb.wrapper.HopsSession;
+import io.hops.util.LongLongHashMap;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -83,11 +87,56 @@ public class InvalidatedBlockClusterj implements
   }
 
   private ClusterjConnector connector = ClusterjConnector.getInstance();
+  private static final RowCounter COUNTER = new RowCounter(TABLE_NAME);
+
+  private static final InListQuery<InvalidateBlocksDTO, InvalidatedBlock>
+      BY_INODE_IDS = new InListQuery<InvalidateBlocksDTO, InvalidatedBlock>(
+      InvalidateBlocksDTO.class, "iNodeId") {
+        @Override
+        protected InvalidatedBlock convert(InvalidateBlocksDTO dto) {
+          return createReplica(dto);
+        }
+      };
   private final static int NOT_FOUND_ROW = -1000;
+
+  private static final BatchReader<InvalidateBlocksDTO, InvalidatedBlock>
+      BATCH_READER = new BatchReader<InvalidateBlocksDTO, InvalidatedBlock>(
+      InvalidateBlocksDTO.class) {
+        @Override
+        protected void markNotFound(InvalidateBlocksDTO dto) {
+          dto.setGenerationStamp(NOT_FOUND_ROW);
+        }
+
+        @Override
+        protected boolean isFound(InvalidateBlocksDTO dto) {
+          return dto.getGenerationStamp() != NOT_FOUND_ROW;
+        }
+
+        @Override
+        protected InvalidatedBlock convert(InvalidateBlocksDTO dto) {
+          return createReplica(dto);
+        }
+      };
   
+  private static final PagedScan<InvalidateBlocksDTO, InvalidatedBlock> ALL =
+      new PagedScan<InvalidateBlocksDTO, InvalidatedBlock>(
+          InvalidateBlocksDTO.class, "all", Integer.MIN_VALUE, "iNodeId",
+          "blockId", "storageId") {
+        @Override
+        protected Object[] keyOf(InvalidateBlocksDTO dto) {
+          return new Object[]{dto.getINodeId(), dto.getBlockId(),
+              dto.getStorageId()};
+        }
+
+        @Override
+        protected InvalidatedBlock convert(InvalidateBlocksDTO dto) {
+          return createReplica(dto);
+        }
+      };
+
   @Override
   public int countAll() throws StorageException {
-    return MySQLQueryHelper.countAll(TABLE_NAME);
+    return COUNTER.count();
   }
 
   @Override
@@ -105,6 +154,17 @@ public class InvalidatedBlockClusterj implements
     
   }
 
+  /**
+   * Paged variant of {@link #findAllInvalidatedBlocks()} that does not build
+   * the full list. Each page is its own query, so unlike
+   * findAllInvalidatedBlocks the rows are not read by one scan. The caller
+   * must close the cursor.
+   */
+  public EntityCursor<InvalidateBlocksDTO, InvalidatedBlock>
+      streamAllInvalidatedBlocks() throws StorageException {
+    return ALL.open(connector.obtainSession(), connector.getScanPageSize());
+  }
+
   @Override
   public List<InvalidatedBlock> findInvalidatedBlockByStorageId(int storageId)
       throws StorageException {
@@ -124,17 +184,17 @@ public class InvalidatedBlockClusterj implements
   
   @Override
   public Map<Long, Long> findInvalidatedBlockByStorageIdUsingMySQLServer(int storageId) throws StorageException {
-  return MySQLQueryHelper.execute(String.format("SELECT %s, %s "
-            + "FROM %s WHERE %s='%d'", BLOCK_ID, GENERATION_STAMP, TABLE_NAME, STORAGE_ID, storageId), new MySQLQueryHelper.ResultSetHandler<Map<Long,Long>>() {
+  return MySQLQueryHelper.stream(String.format("SELECT %s, %s "
+            + "FROM %s WHERE %s=?", BLOCK_ID, GENERATION_STAMP, TABLE_NAME, STORAGE_ID), new MySQLQueryHelper.ResultSetHandler<Map<Long,Long>>() {
       @Override
       public Map<Long,Long> handle(ResultSet result) throws SQLException {
-        Map<Long,Long> blockInodeMap = new HashMap<Long,Long>();
+        LongLongHashMap blockInodeMap = new LongLongHashMap();
         while (result.next()) {
           blockInodeMap.put(result.getLong(BLOCK_ID),result.getLong(GENERATION_STAMP));
         }
         return blockInodeMap;
       }
-    });
+    }, storageId);
   }
 
   @Override
@@ -179,19 +239,7 @@ public class InvalidatedBlockClusterj implements
   @Override
   public List<InvalidatedBlock> findInvalidatedBlocksByINodeIds(int[] inodeIds)
       throws StorageException {
-    HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<InvalidateBlocksDTO> qdt =
-        qb.createQueryDefinition(InvalidateBlocksDTO.class);
-    HopsPredicate pred1 = qdt.get("iNodeId").in(qdt.param("iNodeIdParam"));
-    qdt.where(pred1);
-    HopsQuery<InvalidateBlocksDTO> query = session.createQuery(qdt);
-    query.setParameter("iNodeIdParam", Ints.asList(inodeIds));
-    
-    List<InvalidateBlocksDTO> dtos = query.getResultList();
-    List<InvalidatedBlock> ivl = createList(dtos);
-    session.release(dtos);
-    return ivl;
+    return connector.getParallelScanner().findIn(BY_INODE_IDS, inodeIds);
   }
   
   @Override
@@ -216,27 +264,15 @@ public class InvalidatedBlockClusterj implements
   public List<InvalidatedBlock> findInvalidatedBlocksbyPKS(
       final long[] blockIds, final int[] inodesIds, final int[] storageIds)
       throws StorageException {
-    int currentTableSize = countAll();
-    if (currentTableSize == 0) {
-      return new ArrayList<InvalidatedBlock>();
-    } else if (currentTableSize < inodesIds.length) {
+    // the count may be approximate, it only picks the cheaper read
+    if (countAll() < inodesIds.length) {
       return findAllInvalidatedBlocks();
     }
-    final List<InvalidateBlocksDTO> invBlocks =
-        new ArrayList<InvalidateBlocksDTO>();
-    HopsSession session = connector.obtainSession();
+    List<Object[]> keys = new ArrayList<Object[]>(blockIds.length);
     for (int i = 0; i < blockIds.length; i++) {
-      InvalidateBlocksDTO invTable = session
-          .newInstance(InvalidateBlocksDTO.class,
-              new Object[]{inodesIds[i], blockIds[i], storageIds[i]});
-      invTable.setGenerationStamp(NOT_FOUND_ROW);
-      invTable = session.load(invTable);
-      invBlocks.add(invTable);
+      keys.add(new Object[]{inodesIds[i], blockIds[i], storageIds[i]});
     }
-    session.flush();
-    List<InvalidatedBlock> ivbl = createList(invBlocks);
-    session.release(invBlocks);
-    return ivbl;
+    return BATCH_READER.read(connector.obtainSession(), keys);
   }
 
   @Override
@@ -263,6 +299,7 @@ public class InvalidatedBlockClusterj implements
     if (!modified.isEmpty()) {
       throw new UnsupportedOperationException("Not yet Implemented");
     }
+    COUNTER.add(newed.size() - removed.size());
     session.deletePersistentAll(deletions);
     session.savePersistentAll(changes);
     session.release(deletions);
@@ -273,6 +310,7 @@ public class InvalidatedBlockClusterj implements
   public void removeAll() throws StorageException {
     HopsSession session = connector.obtainSession();
     session.deletePersistentAll(InvalidateBlocksDTO.class);
+    COUNTER.invalidate();
   }
 
   @Override
@@ -285,6 +323,7 @@ public class InvalidatedBlockClusterj implements
     HopsQuery<InvalidateBlocksDTO> query = session.createQuery(qdt);
     query.setParameter("param", storageId);
     query.deletePersistentAll();
+    COUNTER.invalidate();
   }
 
 
@@ -298,7 +337,8 @@ public class InvalidatedBlockClusterj implements
     return list;
   }
 
-  private InvalidatedBlock createReplica(InvalidateBlocksDTO invBlockTable) {
+  private static InvalidatedBlock createReplica(
+      InvalidateBlocksDTO invBlockTable) {
     return new InvalidatedBlock(invBlockTable.getStorageId(),
         invBlockTable.getBlockId(), invBlockTable.getGenerationStamp(),
         invBlockTable.getNumBytes(), invBlockTable.getINodeId());
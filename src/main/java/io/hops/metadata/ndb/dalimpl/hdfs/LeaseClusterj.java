@@ -28,12 +28,12 @@ import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.LeaseDataAccess;
 import io.hops.metadata.hdfs.entity.Lease;
 import io.hops.metadata.ndb.ClusterjConnector;
-import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
+import io.hops.metadata.ndb.RowCounter;
 import io.hops.metadata.ndb.wrapper.HopsPredicate;
-import io.hops.metadata.ndb.wrapper.HopsPredicateOperand;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
 import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
+import io.hops.metadata.ndb.wrapper.HopsQueryShape;
 import io.hops.metadata.ndb.wrapper.HopsSession;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -63,12 +63,24 @@ public class LeaseClusterj implements TablesDef.LeaseTableDef, LeaseDataAccess<L
     void setLastUpdate(long last_upd);
   }
 
+  // a single scan of update_idx, splitting it on holder_id ranges would
+  // read the index once per range
+  private static final HopsQueryShape<LeaseDTO> BY_TIME_LIMIT =
+      new HopsQueryShape<LeaseDTO>(LeaseDTO.class, "byTimeLimit") {
+        @Override
+        protected void define(HopsQueryDomainType<LeaseDTO> dobj)
+            throws StorageException {
+          dobj.where(dobj.get("lastUpdate").lessThan(dobj.param("timelimit")));
+        }
+      };
+
   private ClusterjConnector connector = ClusterjConnector.getInstance();
+  private static final RowCounter COUNTER = new RowCounter(TABLE_NAME);
   private static Log log = LogFactory.getLog(LeaseDataAccess.class);
 
   @Override
   public int countAll() throws StorageException {
-    return MySQLQueryHelper.countAll(TABLE_NAME);
+    return COUNTER.count();
   }
 
   @Override
@@ -132,16 +144,8 @@ public class LeaseClusterj implements TablesDef.LeaseTableDef, LeaseDataAccess<L
   public Collection<Lease> findByTimeLimit(long timeLimit)
       throws StorageException {
     HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType dobj = qb.createQueryDefinition(LeaseDTO.class);
-    HopsPredicateOperand propertyPredicate = dobj.get("lastUpdate");
-    String param = "timelimit";
-    HopsPredicateOperand propertyLimit = dobj.param(param);
-    HopsPredicate lessThan = propertyPredicate.lessThan(propertyLimit);
-    dobj.where(lessThan);
-    HopsQuery query = session.createQuery(dobj);
-    query.setParameter(param, new Long(timeLimit));
-    
+    HopsQuery<LeaseDTO> query = session.createQuery(BY_TIME_LIMIT);
+    query.setParameter("timelimit", timeLimit);
     List<LeaseDTO> dtos = query.getResultList();
     Collection<Lease> ll = createList(dtos);
     session.release(dtos);
@@ -173,6 +177,7 @@ public class LeaseClusterj implements TablesDef.LeaseTableDef, LeaseDataAccess<L
       LeaseDTO lTable = session.newInstance(LeaseDTO.class, key);
       deletions.add(lTable);
     }
+    COUNTER.add(newed.size() - removed.size());
     session.deletePersistentAll(deletions);
     session.savePersistentAll(changes);
     session.release(deletions);
@@ -192,9 +197,10 @@ public class LeaseClusterj implements TablesDef.LeaseTableDef, LeaseDataAccess<L
   public void removeAll() throws StorageException {
     HopsSession session = connector.obtainSession();
     session.deletePersistentAll(LeaseDTO.class);
+    COUNTER.invalidate();
   }
 
-  private Lease createLease(LeaseDTO lTable) {
+  private static Lease createLease(LeaseDTO lTable) {
     return new Lease(lTable.getHolder(), lTable.getHolderId(),
         lTable.getLastUpdate());
   }
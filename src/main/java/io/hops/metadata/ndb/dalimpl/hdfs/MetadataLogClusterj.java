@@ -25,6 +25,7 @@ import io.hops.exception.StorageException;
 import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.MetadataLogDataAccess;
 import io.hops.metadata.hdfs.entity.MetadataLogEntry;
+import io.hops.metadata.ndb.BatchReader;
 import io.hops.metadata.ndb.ClusterjConnector;
 import io.hops.metadata.ndb.wrapper.HopsPredicate;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
@@ -34,12 +35,22 @@ import io.hops.metadata.ndb.wrapper.HopsSession;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 public class MetadataLogClusterj implements TablesDef.MetadataLogTableDef,
     MetadataLogDataAccess<MetadataLogEntry> {
 
   private ClusterjConnector connector = ClusterjConnector.getInstance();
 
+  private static final BatchReader<MetadataLogEntryDto, MetadataLogEntry>
+      BATCH_READER = new BatchReader<MetadataLogEntryDto, MetadataLogEntry>(
+      MetadataLogEntryDto.class) {
+        @Override
+        protected MetadataLogEntry convert(MetadataLogEntryDto dto) {
+          return createMetadataLogEntry(dto);
+        }
+      };
+
   @PersistenceCapable(table = TABLE_NAME)
   public interface MetadataLogEntryDto {
     @PrimaryKey
@@ -126,7 +137,8 @@ public class MetadataLogClusterj implements TablesDef.MetadataLogTableDef,
     return list;
   }
 
-  private MetadataLogEntry createMetadataLogEntry(MetadataLogEntryDto dto) {
+  private static MetadataLogEntry createMetadataLogEntry(
+      MetadataLogEntryDto dto) {
     return new MetadataLogEntry(
         dto.getDatasetId(),
         dto.getInodeId(),
@@ -137,20 +149,11 @@ public class MetadataLogClusterj implements TablesDef.MetadataLogTableDef,
   @Override
   public Collection<MetadataLogEntry> readExisting(
       Collection<MetadataLogEntry> logEntries) throws StorageException {
-    HopsSession session = connector.obtainSession();
-    final ArrayList<MetadataLogEntryDto> dtos =
-        new ArrayList<MetadataLogEntryDto>();
+    List<Object[]> keys = new ArrayList<Object[]>(logEntries.size());
     for (MetadataLogEntry logEntry : logEntries) {
-      Object[] pk = new Object[]{logEntry.getDatasetId(), logEntry.getInodeId(),
-          logEntry.getLogicalTime()};
-      MetadataLogEntryDto dto =
-          session.newInstance(MetadataLogEntryDto.class, pk);
-      dto = session.load(dto);
-      dtos.add(dto);
+      keys.add(new Object[]{logEntry.getDatasetId(), logEntry.getInodeId(),
+          logEntry.getLogicalTime()});
     }
-    session.flush();
-    Collection<MetadataLogEntry> mlel = createCollection(dtos);
-    session.release(dtos);
-    return mlel;
+    return BATCH_READER.read(connector.obtainSession(), keys);
   }
 }
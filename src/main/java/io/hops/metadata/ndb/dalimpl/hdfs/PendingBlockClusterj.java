@@ -18,7 +18,6 @@
  */
 package io.hops.metadata.ndb.dalimpl.hdfs;
 
-import com.google.common.primitives.Ints;
 import com.mysql.clusterj.annotation.Column;
 import com.mysql.clusterj.annotation.PartitionKey;
 import com.mysql.clusterj.annotation.PersistenceCapable;
@@ -28,9 +27,10 @@ import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.PendingBlockDataAccess;
 import io.hops.metadata.hdfs.entity.PendingBlockInfo;
 import io.hops.metadata.ndb.ClusterjConnector;
+import io.hops.metadata.ndb.InListQuery;
+import io.hops.metadata.ndb.ParallelScan;
 import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
 import io.hops.metadata.ndb.wrapper.HopsPredicate;
-import io.hops.metadata.ndb.wrapper.HopsPredicateOperand;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
 import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
@@ -38,6 +38,7 @@ import io.hops.metadata.ndb.wrapper.HopsSession;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public class PendingBlockClusterj
@@ -45,8 +46,8 @@ public class PendingBlockClusterj
 
   @Override
   public int countValidPendingBlocks(long timeLimit) throws StorageException {
-    return MySQLQueryHelper.countWithCriterion(TABLE_NAME,
-        String.format("%s>%d", TIME_STAMP, timeLimit));
+    return MySQLQueryHelper.countWithCriterion(TABLE_NAME, TIME_STAMP + ">?",
+        timeLimit);
   }
 
   @Override
@@ -70,19 +71,7 @@ public class PendingBlockClusterj
   @Override
   public List<PendingBlockInfo> findByINodeIds(int[] inodeIds)
       throws StorageException {
-    HopsSession session = connector.obtainSession();
-
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<PendingBlockDTO> qdt =
-        qb.createQueryDefinition(PendingBlockDTO.class);
-
-    HopsPredicate pred1 = qdt.get("iNodeId").in(qdt.param("idParam"));
-    qdt.where(pred1);
-
-    HopsQuery<PendingBlockDTO> query = session.createQuery(qdt);
-    query.setParameter("idParam", Ints.asList(inodeIds));
-
-    return convertAndRelease(session, query.getResultList());
+    return connector.getParallelScanner().findIn(BY_INODE_IDS, inodeIds);
   }
 
   @PersistenceCapable(table = TABLE_NAME)
@@ -114,6 +103,16 @@ public class PendingBlockClusterj
 
   private ClusterjConnector connector = ClusterjConnector.getInstance();
 
+  private static final InListQuery<PendingBlockDTO, PendingBlockInfo>
+      BY_INODE_IDS = new InListQuery<PendingBlockDTO, PendingBlockInfo>(
+      PendingBlockDTO.class, "iNodeId") {
+        @Override
+        protected PendingBlockInfo convert(PendingBlockDTO dto) {
+          return new PendingBlockInfo(dto.getBlockId(), dto.getINodeId(),
+              dto.getTimestamp(), dto.getNumReplicasInProgress());
+        }
+      };
+
   @Override
   public void prepare(Collection<PendingBlockInfo> removed,
       Collection<PendingBlockInfo> newed, Collection<PendingBlockInfo> modified)
@@ -170,21 +169,27 @@ public class PendingBlockClusterj
     return convertAndRelease(session, query.getResultList());
   }
 
+  private static final ParallelScan<PendingBlockDTO, PendingBlockInfo>
+      BY_TIME_LIMIT = new ParallelScan<PendingBlockDTO, PendingBlockInfo>(
+      PendingBlockDTO.class, "byTimeLimit", TABLE_NAME, INODE_ID, "iNodeId") {
+        @Override
+        protected HopsPredicate where(HopsQueryDomainType<PendingBlockDTO> qdt)
+            throws StorageException {
+          return qdt.get("timestamp").lessThan(qdt.param("timelimit"));
+        }
+
+        @Override
+        protected PendingBlockInfo convert(PendingBlockDTO dto) {
+          return new PendingBlockInfo(dto.getBlockId(), dto.getINodeId(),
+              dto.getTimestamp(), dto.getNumReplicasInProgress());
+        }
+      };
+
   @Override
   public List<PendingBlockInfo> findByTimeLimitLessThan(long timeLimit)
       throws StorageException {
-    HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<PendingBlockDTO> qdt =
-        qb.createQueryDefinition(PendingBlockDTO.class);
-    HopsPredicateOperand predicateOp = qdt.get("timestamp");
-    String paramName = "timelimit";
-    HopsPredicateOperand param = qdt.param(paramName);
-    HopsPredicate lessThan = predicateOp.lessThan(param);
-    qdt.where(lessThan);
-    HopsQuery query = session.createQuery(qdt);
-    query.setParameter(paramName, timeLimit);
-    return convertAndRelease(session, query.getResultList());
+    return connector.getParallelScanner().scan(BY_TIME_LIMIT,
+        Collections.singletonMap("timelimit", timeLimit));
   }
 
   @Override
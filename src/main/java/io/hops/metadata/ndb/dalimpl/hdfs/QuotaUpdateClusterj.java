@@ -26,16 +26,13 @@ import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.QuotaUpdateDataAccess;
 import io.hops.metadata.hdfs.entity.QuotaUpdate;
 import io.hops.metadata.ndb.ClusterjConnector;
-import io.hops.metadata.ndb.mysqlserver.HopsSQLExceptionHelper;
-import io.hops.metadata.ndb.mysqlserver.MysqlServerConnector;
+import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
 import io.hops.metadata.ndb.wrapper.HopsPredicate;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
 import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
 import io.hops.metadata.ndb.wrapper.HopsSession;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -72,8 +69,6 @@ public class QuotaUpdateClusterj
   }
 
   private ClusterjConnector connector = ClusterjConnector.getInstance();
-  private MysqlServerConnector mysqlConnector =
-      MysqlServerConnector.getInstance();
 
   @Override
   public void prepare(Collection<QuotaUpdate> added,
@@ -101,33 +96,30 @@ public class QuotaUpdateClusterj
   }
 
   private static final String FIND_QUERY =
-      "SELECT * FROM " + TABLE_NAME + " ORDER BY " + ID + " LIMIT ";
+      "SELECT * FROM " + TABLE_NAME + " ORDER BY " + ID + " LIMIT ?";
 
   @Override
   public List<QuotaUpdate> findLimited(int limit) throws StorageException {
-    ArrayList<QuotaUpdate> resultList;
-    try {
-      Connection conn = mysqlConnector.obtainSession();
-      PreparedStatement s = conn.prepareStatement(FIND_QUERY + limit);
-      ResultSet result = s.executeQuery();
-      resultList = new ArrayList<QuotaUpdate>();
-
-      while (result.next()) {
-        int id = result.getInt(ID);
-        int inodeId = result.getInt(INODE_ID);
-        int namespaceDelta = result.getInt(NAMESPACE_DELTA);
-        long diskspaceDelta = result.getLong(DISKSPACE_DELTA);
-        resultList
-            .add(new QuotaUpdate(id, inodeId, namespaceDelta, diskspaceDelta));
-      }
-    } catch (SQLException ex) {
-      throw HopsSQLExceptionHelper.wrap(ex);
-    } finally {
-      mysqlConnector.closeSession();
-    }
-    return resultList;
+    return MySQLQueryHelper.execute(FIND_QUERY,
+        new MySQLQueryHelper.ResultSetHandler<List<QuotaUpdate>>() {
+          @Override
+          public List<QuotaUpdate> handle(ResultSet result)
+              throws SQLException {
+            List<QuotaUpdate> resultList = new ArrayList<QuotaUpdate>();
+            while (result.next()) {
+              int id = result.getInt(ID);
+              int inodeId = result.getInt(INODE_ID);
+              int namespaceDelta = result.getInt(NAMESPACE_DELTA);
+              long diskspaceDelta = result.getLong(DISKSPACE_DELTA);
+              resultList.add(
+                  new QuotaUpdate(id, inodeId, namespaceDelta, diskspaceDelta));
+            }
+            return resultList;
+          }
+        }, limit);
   }
 
+
   private QuotaUpdateDTO createPersistable(QuotaUpdate update,
       HopsSession session) throws StorageException {
     QuotaUpdateDTO dto = session.newInstance(QuotaUpdateDTO.class);
@@ -18,8 +18,6 @@
  */
 package io.hops.metadata.ndb.dalimpl.hdfs;
 
-import com.google.common.collect.Sets;
-import com.google.common.primitives.Ints;
 import com.mysql.clusterj.annotation.Column;
 import com.mysql.clusterj.annotation.Index;
 import com.mysql.clusterj.annotation.PartitionKey;
@@ -30,19 +28,22 @@ import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.ReplicaDataAccess;
 import io.hops.metadata.hdfs.entity.Replica;
 import io.hops.metadata.ndb.ClusterjConnector;
+import io.hops.metadata.ndb.InListQuery;
+import io.hops.metadata.ndb.RowCounter;
 import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
 import io.hops.metadata.ndb.wrapper.HopsPredicate;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
-import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
 import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
+import io.hops.metadata.ndb.wrapper.HopsQueryShape;
 import io.hops.metadata.ndb.wrapper.HopsSession;
+import io.hops.util.LongHashSet;
+import io.hops.util.LongIntHashMap;
 import org.apache.log4j.Logger;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -76,19 +77,57 @@ public class ReplicaClusterj
   }
 
   private ClusterjConnector connector = ClusterjConnector.getInstance();
+  private static final RowCounter STORAGE_COUNTER =
+      new RowCounter(TABLE_NAME, STORAGE_ID);
+
+  private static final HopsQueryShape<ReplicaDTO> BY_ID =
+      new HopsQueryShape<ReplicaDTO>(ReplicaDTO.class, "byId") {
+        @Override
+        protected void define(HopsQueryDomainType<ReplicaDTO> dobj)
+            throws StorageException {
+          HopsPredicate pred1 =
+              dobj.get("blockId").equal(dobj.param("blockIdParam"));
+          HopsPredicate pred2 =
+              dobj.get("iNodeId").equal(dobj.param("iNodeIdParam"));
+          dobj.where(pred1.and(pred2));
+        }
+      };
+
+  private static final HopsQueryShape<ReplicaDTO> BY_INODE_ID =
+      new HopsQueryShape<ReplicaDTO>(ReplicaDTO.class, "byINodeId") {
+        @Override
+        protected void define(HopsQueryDomainType<ReplicaDTO> dobj)
+            throws StorageException {
+          dobj.where(dobj.get("iNodeId").equal(dobj.param("iNodeIdParam")));
+        }
+      };
+
+  private static final InListQuery<ReplicaDTO, Replica> BY_INODE_IDS =
+      new InListQuery<ReplicaDTO, Replica>(ReplicaDTO.class, "iNodeId") {
+        @Override
+        protected Replica convert(ReplicaDTO dto) {
+          return new Replica(dto.getStorageId(), dto.getBlockId(),
+              dto.getINodeId());
+        }
+      };
+
+  // a single scan of storage_idx, splitting it on inode_id ranges would
+  // read the index once per range
+  private static final HopsQueryShape<ReplicaDTO> BY_STORAGE_ID =
+      new HopsQueryShape<ReplicaDTO>(ReplicaDTO.class, "byStorageId") {
+        @Override
+        protected void define(HopsQueryDomainType<ReplicaDTO> dobj)
+            throws StorageException {
+          dobj.where(dobj.get("storageId").equal(dobj.param("param")));
+        }
+      };
   private final static int NOT_FOUND_ROW = -1000;
 
   @Override
   public List<Replica> findReplicasById(long blockId, int inodeId)
       throws StorageException {
     HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<ReplicaDTO> dobj =
-        qb.createQueryDefinition(ReplicaDTO.class);
-    HopsPredicate pred1 = dobj.get("blockId").equal(dobj.param("blockIdParam"));
-    HopsPredicate pred2 = dobj.get("iNodeId").equal(dobj.param("iNodeIdParam"));
-    dobj.where(pred1.and(pred2));
-    HopsQuery<ReplicaDTO> query = session.createQuery(dobj);
+    HopsQuery<ReplicaDTO> query = session.createQuery(BY_ID);
     query.setParameter("blockIdParam", blockId);
     query.setParameter("iNodeIdParam", inodeId);
     return convertAndRelease(session, query.getResultList());
@@ -99,12 +138,7 @@ public class ReplicaClusterj
   public List<Replica> findReplicasByINodeId(int inodeId)
       throws StorageException {
     HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<ReplicaDTO> dobj =
-        qb.createQueryDefinition(ReplicaDTO.class);
-    HopsPredicate pred1 = dobj.get("iNodeId").equal(dobj.param("iNodeIdParam"));
-    dobj.where(pred1);
-    HopsQuery<ReplicaDTO> query = session.createQuery(dobj);
+    HopsQuery<ReplicaDTO> query = session.createQuery(BY_INODE_ID);
     query.setParameter("iNodeIdParam", inodeId);
     return convertAndRelease(session, query.getResultList());
   }
@@ -113,15 +147,7 @@ public class ReplicaClusterj
   @Override
   public List<Replica> findReplicasByINodeIds(int[] inodeIds)
       throws StorageException {
-    HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<ReplicaDTO> dobj =
-        qb.createQueryDefinition(ReplicaDTO.class);
-    HopsPredicate pred1 = dobj.get("iNodeId").in(dobj.param("iNodeIdParam"));
-    dobj.where(pred1);
-    HopsQuery<ReplicaDTO> query = session.createQuery(dobj);
-    query.setParameter("iNodeIdParam", Ints.asList(inodeIds));
-    return convertAndRelease(session, query.getResultList());
+    return connector.getParallelScanner().findIn(BY_INODE_IDS, inodeIds);
   }
   
   @Override
@@ -136,17 +162,17 @@ public class ReplicaClusterj
 //    }
 //    return map;
     
-    return MySQLQueryHelper.execute(String.format("SELECT %s, %s "
-            + "FROM %s WHERE %s='%d'", BLOCK_ID, INODE_ID, TABLE_NAME, STORAGE_ID, storageId), new MySQLQueryHelper.ResultSetHandler<Map<Long,Integer>>() {
+    return MySQLQueryHelper.stream(String.format("SELECT %s, %s "
+            + "FROM %s WHERE %s=?", BLOCK_ID, INODE_ID, TABLE_NAME, STORAGE_ID), new MySQLQueryHelper.ResultSetHandler<Map<Long,Integer>>() {
       @Override
       public Map<Long,Integer> handle(ResultSet result) throws SQLException {
-        Map<Long,Integer> blockInodeMap = new HashMap<Long,Integer>();
+        LongIntHashMap blockInodeMap = new LongIntHashMap();
         while (result.next()) {
           blockInodeMap.put(result.getLong(BLOCK_ID),result.getInt(INODE_ID));
         }
         return blockInodeMap;
       }
-    });
+    }, storageId);
   }
 
   @Override
@@ -160,12 +186,14 @@ public class ReplicaClusterj
       ReplicaDTO newInstance = session.newInstance(ReplicaDTO.class);
       createPersistable(replica, newInstance);
       deletions.add(newInstance);
+      STORAGE_COUNTER.add(replica.getStorageId(), -1);
     }
 
     for (Replica replica : newed) {
       ReplicaDTO newInstance = session.newInstance(ReplicaDTO.class);
       createPersistable(replica, newInstance);
       changes.add(newInstance);
+      STORAGE_COUNTER.add(replica.getStorageId(), 1);
     }
 
     for (Replica replica : modified) {
@@ -182,33 +210,28 @@ public class ReplicaClusterj
 
   @Override
   public int countAllReplicasForStorageId(int sid) throws StorageException {
-    return MySQLQueryHelper.countWithCriterion(TABLE_NAME,
-        String.format("%s=%d", STORAGE_ID, sid));
+    return STORAGE_COUNTER.count(sid);
   }
 
   protected static Set<Long> getReplicas(int storageId) throws
       StorageException {
-    return MySQLQueryHelper.execute(String.format("SELECT %s " +
-        "FROM %s WHERE %s='%d'", BLOCK_ID, TABLE_NAME, STORAGE_ID, storageId)
+    return MySQLQueryHelper.stream(String.format("SELECT %s " +
+        "FROM %s WHERE %s=?", BLOCK_ID, TABLE_NAME, STORAGE_ID)
         , new MySQLQueryHelper.ResultSetHandler<Set<Long>>() {
       @Override
       public Set<Long> handle(ResultSet result) throws SQLException {
-        Set<Long> blocks = Sets.newHashSet();
+        LongHashSet blocks = new LongHashSet();
         while (result.next()){
           blocks.add(result.getLong(BLOCK_ID));
         }
         return blocks;
       }
-    });
+    }, storageId);
   }
 
   protected static List<ReplicaClusterj.ReplicaDTO> getReplicas(
       HopsSession session, int storageId) throws StorageException {
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<ReplicaDTO> dobj =
-        qb.createQueryDefinition(ReplicaClusterj.ReplicaDTO.class);
-    dobj.where(dobj.get("storageId").equal(dobj.param("param")));
-    HopsQuery<ReplicaDTO> query = session.createQuery(dobj);
+    HopsQuery<ReplicaDTO> query = session.createQuery(BY_STORAGE_ID);
     query.setParameter("param", storageId);
     return query.getResultList();
   }
@@ -18,7 +18,6 @@
  */
 package io.hops.metadata.ndb.dalimpl.hdfs;
 
-import com.google.common.primitives.Ints;
 import com.mysql.clusterj.annotation.Column;
 import com.mysql.clusterj.annotation.PartitionKey;
 import com.mysql.clusterj.annotation.PersistenceCapable;
@@ -28,6 +27,7 @@ import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.ReplicaUnderConstructionDataAccess;
 import io.hops.metadata.hdfs.entity.ReplicaUnderConstruction;
 import io.hops.metadata.ndb.ClusterjConnector;
+import io.hops.metadata.ndb.InListQuery;
 import io.hops.metadata.ndb.wrapper.HopsPredicate;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
@@ -72,6 +72,16 @@ public class ReplicaUnderConstructionClusterj
 
   private ClusterjConnector connector = ClusterjConnector.getInstance();
 
+  private static final InListQuery<ReplicaUcDTO, ReplicaUnderConstruction>
+      BY_INODE_IDS = new InListQuery<ReplicaUcDTO, ReplicaUnderConstruction>(
+      ReplicaUcDTO.class, "iNodeId") {
+        @Override
+        protected ReplicaUnderConstruction convert(ReplicaUcDTO dto) {
+          return new ReplicaUnderConstruction(dto.getState(),
+              dto.getStorageId(), dto.getBlockId(), dto.getINodeId());
+        }
+      };
+
   @Override
   public void prepare(Collection<ReplicaUnderConstruction> removed,
       Collection<ReplicaUnderConstruction> newed,
@@ -131,15 +141,7 @@ public class ReplicaUnderConstructionClusterj
   @Override
   public List<ReplicaUnderConstruction> findReplicaUnderConstructionByINodeIds(
       int[] inodeIds) throws StorageException {
-    HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<ReplicaUcDTO> dobj =
-        qb.createQueryDefinition(ReplicaUcDTO.class);
-    HopsPredicate pred1 = dobj.get("iNodeId").in(dobj.param("iNodeIdParam"));
-    dobj.where(pred1);
-    HopsQuery<ReplicaUcDTO> query = session.createQuery(dobj);
-    query.setParameter("iNodeIdParam", Ints.asList(inodeIds));
-    return convertAndRelease(session, query.getResultList());
+    return connector.getParallelScanner().findIn(BY_INODE_IDS, inodeIds);
   }
 
   private List<ReplicaUnderConstruction> convertAndRelease(HopsSession session,
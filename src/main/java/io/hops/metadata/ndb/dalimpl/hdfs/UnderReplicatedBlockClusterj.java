@@ -18,7 +18,6 @@
  */
 package io.hops.metadata.ndb.dalimpl.hdfs;
 
-import com.google.common.primitives.Ints;
 import com.mysql.clusterj.Query;
 import com.mysql.clusterj.annotation.Column;
 import com.mysql.clusterj.annotation.Index;
@@ -30,16 +29,18 @@ import io.hops.metadata.hdfs.TablesDef;
 import io.hops.metadata.hdfs.dal.UnderReplicatedBlockDataAccess;
 import io.hops.metadata.hdfs.entity.UnderReplicatedBlock;
 import io.hops.metadata.ndb.ClusterjConnector;
-import io.hops.metadata.ndb.mysqlserver.MySQLQueryHelper;
-import io.hops.metadata.ndb.wrapper.HopsPredicate;
+import io.hops.metadata.ndb.InListQuery;
+import io.hops.metadata.ndb.RowCounter;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
 import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
+import io.hops.metadata.ndb.wrapper.HopsQueryShape;
 import io.hops.metadata.ndb.wrapper.HopsSession;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class UnderReplicatedBlockClusterj
     implements TablesDef.UnderReplicatedBlockTableDef,
@@ -47,14 +48,23 @@ public class UnderReplicatedBlockClusterj
 
   @Override
   public int countByLevel(int level) throws StorageException {
-    return MySQLQueryHelper
-        .countWithCriterion(TABLE_NAME, String.format("%s=%d", LEVEL, level));
+    return LEVEL_COUNTER.count(level);
   }
 
   @Override
   public int countLessThanALevel(int level) throws StorageException {
-    return MySQLQueryHelper
-        .countWithCriterion(TABLE_NAME, String.format("%s<%d", LEVEL, level));
+    return LEVEL_COUNTER.countLessThan(level);
+  }
+
+  /**
+   * @return the number of blocks per level, for the levels that have blocks,
+   * read with one group by query or from the row counters. With
+   * io.hops.counters.grouped.max.age above 0, countByLevel and
+   * countLessThanALevel answer from the same counts, so calling them for
+   * every level costs one query.
+   */
+  public Map<Integer, Integer> countByLevels() throws StorageException {
+    return LEVEL_COUNTER.counts();
   }
 
   @PersistenceCapable(table = TABLE_NAME)
@@ -86,6 +96,49 @@ public class UnderReplicatedBlockClusterj
   }
 
   private ClusterjConnector connector = ClusterjConnector.getInstance();
+  private static final RowCounter COUNTER = new RowCounter(TABLE_NAME);
+  private static final RowCounter LEVEL_COUNTER =
+      new RowCounter(TABLE_NAME, LEVEL, true);
+
+  private static final HopsQueryShape<UnderReplicatedBlocksDTO> BY_LEVEL =
+      new LevelShape("byLevel");
+
+  private static final HopsQueryShape<UnderReplicatedBlocksDTO>
+      BY_LEVEL_PAGED = new LevelShape("byLevelPaged");
+
+  private static final HopsQueryShape<UnderReplicatedBlocksDTO> BY_INODE_ID =
+      new HopsQueryShape<UnderReplicatedBlocksDTO>(
+          UnderReplicatedBlocksDTO.class, "byINodeId") {
+        @Override
+        protected void define(HopsQueryDomainType<UnderReplicatedBlocksDTO> qdt)
+            throws StorageException {
+          qdt.where(qdt.get("iNodeId").equal(qdt.param("idParam")));
+        }
+      };
+
+  private static final InListQuery<UnderReplicatedBlocksDTO,
+      UnderReplicatedBlock> BY_INODE_IDS =
+      new InListQuery<UnderReplicatedBlocksDTO, UnderReplicatedBlock>(
+          UnderReplicatedBlocksDTO.class, "iNodeId") {
+        @Override
+        protected UnderReplicatedBlock convert(UnderReplicatedBlocksDTO dto) {
+          return new UnderReplicatedBlock(dto.getLevel(), dto.getBlockId(),
+              dto.getINodeId());
+        }
+      };
+
+  private static class LevelShape
+      extends HopsQueryShape<UnderReplicatedBlocksDTO> {
+    LevelShape(String name) {
+      super(UnderReplicatedBlocksDTO.class, name);
+    }
+
+    @Override
+    protected void define(HopsQueryDomainType<UnderReplicatedBlocksDTO> dobj)
+        throws StorageException {
+      dobj.where(dobj.get("level").equal(dobj.param("level")));
+    }
+  }
 
   @Override
   public UnderReplicatedBlock findByPk(long blockId, int inodeId)
@@ -117,6 +170,7 @@ public class UnderReplicatedBlockClusterj
           session.newInstance(UnderReplicatedBlocksDTO.class);
       createPersistable(urBlock, newInstance);
       deletions.add(newInstance);
+      LEVEL_COUNTER.add(urBlock.getLevel(), -1);
     }
 
     for (UnderReplicatedBlock urBlock : newed) {
@@ -124,6 +178,7 @@ public class UnderReplicatedBlockClusterj
           session.newInstance(UnderReplicatedBlocksDTO.class);
       createPersistable(urBlock, newInstance);
       changes.add(newInstance);
+      LEVEL_COUNTER.add(urBlock.getLevel(), 1);
     }
 
     for (UnderReplicatedBlock urBlock : modified) {
@@ -132,6 +187,11 @@ public class UnderReplicatedBlockClusterj
       createPersistable(urBlock, newInstance);
       changes.add(newInstance);
     }
+    if (!modified.isEmpty()) {
+      // the previous levels of the modified blocks are not known
+      LEVEL_COUNTER.invalidate();
+    }
+    COUNTER.add(newed.size() - removed.size());
     session.deletePersistentAll(deletions);
     session.savePersistentAll(changes);
 
@@ -167,7 +227,7 @@ public class UnderReplicatedBlockClusterj
 
   @Override
   public int countAll() throws StorageException {
-    return MySQLQueryHelper.countAll(TABLE_NAME);
+    return COUNTER.count();
   }
 
   @Override
@@ -185,12 +245,8 @@ public class UnderReplicatedBlockClusterj
   public List<UnderReplicatedBlock> findByLevel(int level)
       throws StorageException {
     HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<UnderReplicatedBlocksDTO> dobj =
-        qb.createQueryDefinition(UnderReplicatedBlocksDTO.class);
-    HopsPredicate pred = dobj.get("level").equal(dobj.param("level"));
-    dobj.where(pred);
-    HopsQuery<UnderReplicatedBlocksDTO> query = session.createQuery(dobj);
+    HopsQuery<UnderReplicatedBlocksDTO> query =
+        session.createQuery(BY_LEVEL);
     query.setParameter("level", level);
     query.setOrdering(Query.Ordering.ASCENDING, "level", "timestamp");
     return convertAndRelease(session, query.getResultList());
@@ -200,12 +256,8 @@ public class UnderReplicatedBlockClusterj
   public List<UnderReplicatedBlock> findByLevel(int level, int offset,
       int count) throws StorageException {
     HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<UnderReplicatedBlocksDTO> dobj =
-        qb.createQueryDefinition(UnderReplicatedBlocksDTO.class);
-    HopsPredicate pred = dobj.get("level").equal(dobj.param("level"));
-    dobj.where(pred);
-    HopsQuery<UnderReplicatedBlocksDTO> query = session.createQuery(dobj);
+    HopsQuery<UnderReplicatedBlocksDTO> query =
+        session.createQuery(BY_LEVEL_PAGED);
     query.setParameter("level", level);
     query.setOrdering(Query.Ordering.ASCENDING, "level", "timestamp");
     query.setLimits(offset, count);
@@ -216,12 +268,8 @@ public class UnderReplicatedBlockClusterj
   public List<UnderReplicatedBlock> findByINodeId(int inodeId)
       throws StorageException {
     HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<UnderReplicatedBlocksDTO> qdt =
-        qb.createQueryDefinition(UnderReplicatedBlocksDTO.class);
-    HopsPredicate pred1 = qdt.get("iNodeId").equal(qdt.param("idParam"));
-    qdt.where(pred1);
-    HopsQuery<UnderReplicatedBlocksDTO> query = session.createQuery(qdt);
+    HopsQuery<UnderReplicatedBlocksDTO> query =
+        session.createQuery(BY_INODE_ID);
     query.setParameter("idParam", inodeId);
     //FIXME[M]: it throws ClusterJUserException: There is no index containing the ordering fields.
     //http://bugs.mysql.com/bug.php?id=67765
@@ -232,20 +280,14 @@ public class UnderReplicatedBlockClusterj
   @Override
   public List<UnderReplicatedBlock> findByINodeIds(int[] inodeIds)
       throws StorageException {
-    HopsSession session = connector.obtainSession();
-    HopsQueryBuilder qb = session.getQueryBuilder();
-    HopsQueryDomainType<UnderReplicatedBlocksDTO> qdt =
-        qb.createQueryDefinition(UnderReplicatedBlocksDTO.class);
-    HopsPredicate pred1 = qdt.get("iNodeId").in(qdt.param("idParam"));
-    qdt.where(pred1);
-    HopsQuery<UnderReplicatedBlocksDTO> query = session.createQuery(qdt);
-    query.setParameter("idParam", Ints.asList(inodeIds));
-    return convertAndRelease(session, query.getResultList());
+    return connector.getParallelScanner().findIn(BY_INODE_IDS, inodeIds);
   }
   
   @Override
   public void removeAll() throws StorageException {
     HopsSession session = connector.obtainSession();
     session.deletePersistentAll(UnderReplicatedBlocksDTO.class);
+    COUNTER.invalidate();
+    LEVEL_COUNTER.invalidate();
   }
 }
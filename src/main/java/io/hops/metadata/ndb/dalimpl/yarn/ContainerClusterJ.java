@@ -23,6 +23,8 @@ import com.mysql.clusterj.annotation.PersistenceCapable;
 import com.mysql.clusterj.annotation.PrimaryKey;
 import io.hops.exception.StorageException;
 import io.hops.metadata.ndb.ClusterjConnector;
+import io.hops.metadata.ndb.EntityCursor;
+import io.hops.metadata.ndb.PagedScan;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
 import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
@@ -60,6 +62,20 @@ public class ContainerClusterJ
 
   private final ClusterjConnector connector = ClusterjConnector.getInstance();
 
+  private static final PagedScan<ContainerDTO, Container> ALL =
+      new PagedScan<ContainerDTO, Container>(ContainerDTO.class, "all", "",
+          "containerid") {
+        @Override
+        protected Object[] keyOf(ContainerDTO dto) {
+          return new Object[]{dto.getcontainerid()};
+        }
+
+        @Override
+        protected Container convert(ContainerDTO dto) throws StorageException {
+          return createHopContainer(dto);
+        }
+      };
+
   @Override
   public Map<String, Container> getAll() throws StorageException {
     HopsSession session = connector.obtainSession();
@@ -73,6 +89,16 @@ public class ContainerClusterJ
     return createMap(results);
   }
 
+  /**
+   * Paged variant of {@link #getAll()} that does not build the full map.
+   * Each page is its own query, so unlike getAll the rows are not read by
+   * one scan. The caller must close the cursor.
+   */
+  public EntityCursor<ContainerDTO, Container> streamAll()
+      throws StorageException {
+    return ALL.open(connector.obtainSession(), connector.getScanPageSize());
+  }
+
   @Override
   public void addAll(Collection<Container> toAdd) throws StorageException {
     HopsSession session = connector.obtainSession();
@@ -92,7 +118,7 @@ public class ContainerClusterJ
     session.savePersistent(createPersistable(container, session));
   }
 
-  private Container createHopContainer(ContainerDTO containerDTO)
+  private static Container createHopContainer(ContainerDTO containerDTO)
       throws StorageException {
     Container hop = null;
     try {
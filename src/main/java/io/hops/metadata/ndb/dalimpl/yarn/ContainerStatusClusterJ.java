@@ -137,7 +137,7 @@ public class ContainerStatusClusterJ implements
     return csDTO;
   }
 
-  private static ContainerStatus createHopContainerStatus(
+  static ContainerStatus createHopContainerStatus(
       ContainerStatusDTO csDTO) {
     ContainerStatus hop =
         new ContainerStatus(csDTO.getcontainerid(), csDTO.getstate(),
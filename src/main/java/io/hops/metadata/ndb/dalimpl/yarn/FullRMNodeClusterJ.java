@@ -19,10 +19,12 @@
 package io.hops.metadata.ndb.dalimpl.yarn;
 
 import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.BatchReader;
 import io.hops.metadata.ndb.ClusterjConnector;
 import io.hops.metadata.ndb.wrapper.HopsSession;
 import io.hops.metadata.yarn.dal.FullRMNodeDataAccess;
 import io.hops.metadata.yarn.entity.ContainerId;
+import io.hops.metadata.yarn.entity.ContainerStatus;
 import io.hops.metadata.yarn.entity.FinishedApplications;
 import io.hops.metadata.yarn.entity.JustLaunchedContainers;
 import io.hops.metadata.yarn.entity.NextHeartbeat;
@@ -34,6 +36,7 @@ import io.hops.metadata.yarn.entity.Resource;
 import io.hops.metadata.yarn.entity.UpdatedContainerInfo;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +54,17 @@ public class FullRMNodeClusterJ implements FullRMNodeDataAccess<RMNodeComps> {
   private final UpdatedContainerInfoClusterJ updatedContainerDA =
       new UpdatedContainerInfoClusterJ();
 
+  private static final BatchReader<ContainerStatusClusterJ.ContainerStatusDTO,
+      ContainerStatus> CONTAINER_STATUS_READER =
+      new BatchReader<ContainerStatusClusterJ.ContainerStatusDTO,
+          ContainerStatus>(ContainerStatusClusterJ.ContainerStatusDTO.class) {
+        @Override
+        protected ContainerStatus convert(
+            ContainerStatusClusterJ.ContainerStatusDTO dto) {
+          return ContainerStatusClusterJ.createHopContainerStatus(dto);
+        }
+      };
+
   @Override
   public RMNodeComps findByNodeId(String nodeId) throws StorageException {
 
@@ -80,15 +94,11 @@ public class FullRMNodeClusterJ implements FullRMNodeDataAccess<RMNodeComps> {
     }
     List<JustLaunchedContainers> hopJustLaunchedContainers = justLaunchedDA.
         findByRMNode(nodeId);
-    List<ContainerStatusClusterJ.ContainerStatusDTO> containerStatusDTOs =
-        new ArrayList<ContainerStatusClusterJ.ContainerStatusDTO>();
+    List<Object[]> containerStatusKeys = new ArrayList<Object[]>();
     if (hopJustLaunchedContainers != null) {
       for (JustLaunchedContainers hop : hopJustLaunchedContainers) {
-        Object[] pk = new Object[]{hop.getContainerId(), hop.getRmnodeid()};
-        ContainerStatusClusterJ.ContainerStatusDTO containerStatusDTO = session.
-            newInstance(ContainerStatusClusterJ.ContainerStatusDTO.class, pk);
-        containerStatusDTO = session.load(containerStatusDTO);
-        containerStatusDTOs.add(containerStatusDTO);
+        containerStatusKeys
+            .add(new Object[]{hop.getContainerId(), hop.getRmnodeid()});
       }
     }
 
@@ -97,16 +107,19 @@ public class FullRMNodeClusterJ implements FullRMNodeDataAccess<RMNodeComps> {
     if (hopUpdatedContainerInfo != null) {
       for (Integer uciId : hopUpdatedContainerInfo.keySet()) {
         for (UpdatedContainerInfo hop : hopUpdatedContainerInfo.get(uciId)) {
-          Object[] pk = new Object[]{hop.getContainerId(), hop.getRmnodeid()};
-          ContainerStatusClusterJ.ContainerStatusDTO containerStatusDTO =
-              session.
-                  newInstance(ContainerStatusClusterJ.ContainerStatusDTO.class,
-                      pk);
-          containerStatusDTO = session.load(containerStatusDTO);
-          containerStatusDTOs.add(containerStatusDTO);
+          containerStatusKeys
+              .add(new Object[]{hop.getContainerId(), hop.getRmnodeid()});
         }
       }
     }
+    List<ContainerStatus> containerStatuses =
+        CONTAINER_STATUS_READER.read(session, containerStatusKeys);
+    Map<String, ContainerStatus> hopContainersStatus =
+        new HashMap<String, ContainerStatus>();
+    for (ContainerStatus containerStatus : containerStatuses) {
+      hopContainersStatus.put(containerStatus.getContainerid(),
+          containerStatus);
+    }
     Resource hopResource = resourceDA
         .findEntry(nodeId, Resource.TOTAL_CAPABILITY, Resource.RMNODE);
 
@@ -146,8 +159,7 @@ public class FullRMNodeClusterJ implements FullRMNodeDataAccess<RMNodeComps> {
     return new RMNodeComps(hopRMNode, hopNextHeartbeat, hopNode,
         hopNodeHBResponse, hopResource, hopJustLaunchedContainers,
         hopUpdatedContainerInfo, hopContainerIdsToClean,
-        hopFinishedApplications,
-        ContainerStatusClusterJ.createMap(containerStatusDTOs));
+        hopFinishedApplications, hopContainersStatus);
   }
 
 }
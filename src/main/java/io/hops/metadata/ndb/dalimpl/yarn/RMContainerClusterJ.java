@@ -23,6 +23,8 @@ import com.mysql.clusterj.annotation.PersistenceCapable;
 import com.mysql.clusterj.annotation.PrimaryKey;
 import io.hops.exception.StorageException;
 import io.hops.metadata.ndb.ClusterjConnector;
+import io.hops.metadata.ndb.EntityCursor;
+import io.hops.metadata.ndb.PagedScan;
 import io.hops.metadata.ndb.wrapper.HopsQuery;
 import io.hops.metadata.ndb.wrapper.HopsQueryBuilder;
 import io.hops.metadata.ndb.wrapper.HopsQueryDomainType;
@@ -93,6 +95,20 @@ public class RMContainerClusterJ
 
   private final ClusterjConnector connector = ClusterjConnector.getInstance();
 
+  private static final PagedScan<RMContainerDTO, RMContainer> ALL =
+      new PagedScan<RMContainerDTO, RMContainer>(RMContainerDTO.class, "all",
+          "", "containeridid") {
+        @Override
+        protected Object[] keyOf(RMContainerDTO dto) {
+          return new Object[]{dto.getcontaineridid()};
+        }
+
+        @Override
+        protected RMContainer convert(RMContainerDTO dto) {
+          return createHopRMContainer(dto);
+        }
+      };
+
   @Override
   public Map<String, RMContainer> getAll() throws StorageException {
     HopsSession session = connector.obtainSession();
@@ -106,6 +122,16 @@ public class RMContainerClusterJ
     return createMap(results);
   }
 
+  /**
+   * Paged variant of {@link #getAll()} that does not build the full map.
+   * Each page is its own query, so unlike getAll the rows are not read by
+   * one scan. The caller must close the cursor.
+   */
+  public EntityCursor<RMContainerDTO, RMContainer> streamAll()
+      throws StorageException {
+    return ALL.open(connector.obtainSession(), connector.getScanPageSize());
+  }
+
   @Override
 
   public void addAll(Collection<RMContainer> toAdd) throws StorageException {
@@ -142,7 +168,8 @@ public class RMContainerClusterJ
     session.flush();
   }
 
-  private RMContainer createHopRMContainer(RMContainerDTO rMContainerDTO) {
+  private static RMContainer createHopRMContainer(
+      RMContainerDTO rMContainerDTO) {
 
     return new RMContainer(rMContainerDTO.getcontaineridid(),
         rMContainerDTO.getappattemptidid(), rMContainerDTO.getnodeidid(),
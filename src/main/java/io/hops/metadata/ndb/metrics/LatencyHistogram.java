@@ -0,0 +1,116 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with log-linear buckets, in the spirit of
+ * HdrHistogram. Values below 64 are counted exactly; above that every power
+ * of two is split into 32 buckets, which bounds the relative error of the
+ * reported percentiles to about 3%.
+ * <p/>
+ * Values are recorded in microseconds.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS =
+      (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records the time elapsed since startNanos, as returned by
+   * {@link System#nanoTime()}.
+   */
+  public void recordSince(long startNanos) {
+    record((System.nanoTime() - startNanos) / 1000);
+  }
+
+  public void record(long micros) {
+    if (micros < 0) {
+      micros = 0;
+    }
+    counts.incrementAndGet(bucketIndex(micros));
+    count.incrementAndGet();
+    sum.addAndGet(micros);
+    long currentMax;
+    while (micros > (currentMax = max.get())) {
+      if (max.compareAndSet(currentMax, micros)) {
+        break;
+      }
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public LatencySnapshot snapshot() {
+    long[] copy = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      copy[i] = counts.get(i);
+      total += copy[i];
+    }
+    double mean = total == 0 ? 0 : (double) sum.get() / count.get();
+    return new LatencySnapshot(total, mean, percentile(copy, total, 0.5),
+        percentile(copy, total, 0.9), percentile(copy, total, 0.99),
+        percentile(copy, total, 0.999), max.get());
+  }
+
+  private static long percentile(long[] copy, long total, double percentile) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(percentile * total);
+    long seen = 0;
+    for (int i = 0; i < copy.length; i++) {
+      seen += copy[i];
+      if (seen >= rank) {
+        return highestEquivalentValue(i);
+      }
+    }
+    return highestEquivalentValue(copy.length - 1);
+  }
+
+  static int bucketIndex(long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS +
+        (int) ((value >>> shift) - SUB_BUCKETS);
+  }
+
+  static long highestEquivalentValue(int index) {
+    if (index < 2 * SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
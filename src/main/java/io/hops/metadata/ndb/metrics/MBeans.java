@@ -0,0 +1,70 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers the metrics beans of this module with the platform MBean server.
+ */
+public class MBeans {
+
+  static final Log LOG = LogFactory.getLog(MBeans.class);
+  public static final String DOMAIN = "io.hops.metadata.ndb";
+
+  /**
+   * Registers bean as io.hops.metadata.ndb:type=&lt;type&gt;, replacing a bean
+   * that was registered under the same name before.
+   *
+   * @return the name of the bean, or null if it could not be registered
+   */
+  public static ObjectName register(String type, Object bean) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName name = new ObjectName(DOMAIN + ":type=" + type);
+      try {
+        server.registerMBean(bean, name);
+      } catch (InstanceAlreadyExistsException e) {
+        server.unregisterMBean(name);
+        server.registerMBean(bean, name);
+      }
+      return name;
+    } catch (Exception e) {
+      LOG.warn("Failed to register MBean " + type, e);
+      return null;
+    }
+  }
+
+  public static void unregister(ObjectName name) {
+    if (name == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    } catch (Exception e) {
+      LOG.warn("Failed to unregister MBean " + name, e);
+    }
+  }
+}
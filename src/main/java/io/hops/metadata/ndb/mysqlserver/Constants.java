@@ -31,4 +31,14 @@ public class Constants {
       "io.hops.metadata.ndb.mysqlserver.username";
   public static final String PROPERTY_MYSQL_PASSWORD =
       "io.hops.metadata.ndb.mysqlserver.password";
+  public static final String PROPERTY_MYSQL_USE_SERVER_PREP_STMTS =
+      "io.hops.metadata.ndb.mysqlserver.use_server_prep_stmts";
+  public static final String PROPERTY_MYSQL_PREP_STMT_CACHE_SIZE =
+      "io.hops.metadata.ndb.mysqlserver.prep_stmt_cache_size";
+  public static final String PROPERTY_MYSQL_TRANSACTION_SCOPED =
+      "io.hops.metadata.ndb.mysqlserver.transaction_scoped";
+  public static final String PROPERTY_MYSQL_MAX_FAILURES =
+      "io.hops.metadata.ndb.mysqlserver.max_failures";
+  public static final String PROPERTY_MYSQL_RETRY_INTERVAL =
+      "io.hops.metadata.ndb.mysqlserver.retry_interval";
 }
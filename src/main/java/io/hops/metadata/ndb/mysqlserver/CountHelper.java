@@ -20,11 +20,6 @@ package io.hops.metadata.ndb.mysqlserver;
 
 import io.hops.exception.StorageException;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-
 /**
  * This class is to do count operations using Mysql Server.
  */
@@ -35,13 +30,14 @@ public class CountHelper {
       "select count(distinct %s) from %s";
   public static final String COUNT_WHERE = "select count(*) from %s where %s";
   
-  private static MysqlServerConnector connector =
-      MysqlServerConnector.getInstance();
-
-  public static int countWhere(String tableName, String condition)
-      throws StorageException {
+  /**
+   * @param condition
+   *     the where clause, with a ? for each of params
+   */
+  public static int countWhere(String tableName, String condition,
+      Object... params) throws StorageException {
     String query = String.format(COUNT_WHERE, tableName, condition);
-    return count(query);
+    return count(query, params);
   }
 
   /**
@@ -65,22 +61,9 @@ public class CountHelper {
     return count(query);
   }
   
-  private static int count(String query) throws StorageException {
-    try {
-      Connection conn = connector.obtainSession();
-      PreparedStatement s = conn.prepareStatement(query);
-      ResultSet result = s.executeQuery();
-      if (result.next()) {
-        return result.getInt(1);
-      } else {
-        throw new StorageException(
-            String.format("Count result set is empty. Query: %s", query));
-      }
-    } catch (SQLException ex) {
-      throw new StorageException(ex);
-    } finally {
-      connector.closeSession();
-    }
+  private static int count(String query, Object... params)
+      throws StorageException {
+    return MySQLQueryHelper.executeIntAggrQuery(query, params);
   }
 
   /**
@@ -90,15 +73,15 @@ public class CountHelper {
    *
    * @param tableName
    * @param criterion
-   *     E.g. criterion="id > 100".
+   *     E.g. criterion="id > ?".
    * @return
    */
-  public static int countWithCriterion(String tableName, String criterion)
-      throws StorageException {
+  public static int countWithCriterion(String tableName, String criterion,
+      Object... params) throws StorageException {
     StringBuilder queryBuilder =
         new StringBuilder(String.format(COUNT_QUERY, tableName)).
             append(" where ").
             append(criterion);
-    return count(queryBuilder.toString());
+    return count(queryBuilder.toString(), params);
   }
 }
@@ -0,0 +1,118 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.mysqlserver;
+
+import io.hops.exception.StorageException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs several counts, mins and maxes, possibly over different tables, as
+ * scalar subqueries of one statement, in one round trip to mysqld.
+ * <pre>
+ *   MultiAggregate aggregate = new MultiAggregate();
+ *   int requested = aggregate.count(TABLE_NAME, STATUS + "=?", REQUESTED);
+ *   int maxId = aggregate.max(TABLE_NAME, ID);
+ *   int[] results = aggregate.execute();
+ *   int count = results[requested];
+ * </pre>
+ * As with the other helpers a min or max over no rows is 0.
+ */
+public class MultiAggregate {
+
+  private final StringBuilder query = new StringBuilder("select ");
+  private final List<Object> params = new ArrayList<Object>();
+  private int size = 0;
+
+  /**
+   * @return the index of the count in the results
+   */
+  public int count(String tableName) {
+    return add("count(*)", tableName, null);
+  }
+
+  /**
+   * @param criterion
+   *     the where clause, with a ? for each of params
+   * @return the index of the count in the results
+   */
+  public int count(String tableName, String criterion, Object... params) {
+    return add("count(*)", tableName, criterion, params);
+  }
+
+  /**
+   * @return the index of the min in the results
+   */
+  public int min(String tableName, String column) {
+    return add("min(" + column + ")", tableName, null);
+  }
+
+  /**
+   * @return the index of the max in the results
+   */
+  public int max(String tableName, String column) {
+    return add("max(" + column + ")", tableName, null);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the results, in the order the aggregates were added
+   */
+  public int[] execute() throws StorageException {
+    if (size == 0) {
+      return new int[0];
+    }
+    return MySQLQueryHelper.execute(query.toString(),
+        new MySQLQueryHelper.ResultSetHandler<int[]>() {
+          @Override
+          public int[] handle(ResultSet result) throws SQLException {
+            int[] values = new int[size];
+            if (result.next()) {
+              for (int i = 0; i < size; i++) {
+                values[i] = result.getInt(i + 1);
+              }
+            }
+            return values;
+          }
+        }, params.toArray());
+  }
+
+  private int add(String aggregate, String tableName, String criterion,
+      Object... criterionParams) {
+    if (size > 0) {
+      query.append(", ");
+    }
+    query.append("(select ").append(aggregate).append(" from ")
+        .append(tableName);
+    if (criterion != null) {
+      query.append(" where ").append(criterion);
+      for (Object param : criterionParams) {
+        params.add(param);
+      }
+    }
+    query.append(")");
+    return size++;
+  }
+}
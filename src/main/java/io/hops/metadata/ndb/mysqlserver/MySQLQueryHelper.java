@@ -19,24 +19,38 @@
 package io.hops.metadata.ndb.mysqlserver;
 
 import io.hops.exception.StorageException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * This class is to do count operations using Mysql Server.
+ * <p/>
+ * Values are passed as parameters of the statement instead of being
+ * formatted into the SQL text, so that every call site sends the same text
+ * and the statement prepared by the server is reused from the cache of the
+ * pooled connection.
  */
 public class MySQLQueryHelper {
 
+  static final Log LOG = LogFactory.getLog(MySQLQueryHelper.class);
+
   public static final String COUNT_QUERY = "select count(*) from %s";
   public static final String COUNT_QUERY_UNIQUE =
       "select count(distinct %s) from %s";
   public static final String SELECT_EXISTS = "select exists(%s)";
   public static final String SELECT_EXISTS_QUERY = "select * from %s";
   public static final String MIN = "select min(%s) from %s";
-  public static final String MAX = "select min(%s) from %s";
+  public static final String MAX = "select max(%s) from %s";
+  public static final String COUNT_GROUPED =
+      "select %s, count(*) from %s group by %s";
   
   private static MysqlServerConnector connector =
       MysqlServerConnector.getInstance();
@@ -65,47 +79,79 @@ public class MySQLQueryHelper {
   /**
    * Counts the number of rows in a table specified by the table name where
    * satisfies the given criterion. The criterion should be a valid SLQ
-   * statement.
+   * statement, with a ? for each of params.
    *
    * @param tableName
    * @param criterion
-   *     E.g. criterion="id > 100".
+   *     E.g. criterion="id > ?".
    * @return
    */
-  public static int countWithCriterion(String tableName, String criterion)
-      throws StorageException {
+  public static int countWithCriterion(String tableName, String criterion,
+      Object... params) throws StorageException {
     StringBuilder queryBuilder =
         new StringBuilder(String.format(COUNT_QUERY, tableName)).
             append(" where ").
             append(criterion);
-    return executeIntAggrQuery(queryBuilder.toString());
+    return executeIntAggrQuery(queryBuilder.toString(), params);
   }
   
-  public static boolean exists(String tableName, String criterion)
-      throws StorageException {
+  /**
+   * Counts the rows of a table per value of an int column, in one pass.
+   *
+   * @return the number of rows per value, for the values that have rows
+   */
+  public static Map<Integer, Integer> countGroupedBy(String tableName,
+      String column) throws StorageException {
+    return execute(String.format(COUNT_GROUPED, column, tableName, column),
+        new ResultSetHandler<Map<Integer, Integer>>() {
+          @Override
+          public Map<Integer, Integer> handle(ResultSet result)
+              throws SQLException {
+            Map<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+            while (result.next()) {
+              counts.put(result.getInt(1), result.getInt(2));
+            }
+            return counts;
+          }
+        });
+  }
+
+  public static boolean exists(String tableName, String criterion,
+      Object... params) throws StorageException {
     StringBuilder query =
         new StringBuilder(String.format(SELECT_EXISTS_QUERY, tableName));
     query.append(" where ").append(criterion);
-    return executeBooleanQuery(String.format(SELECT_EXISTS, query.toString()));
+    return executeBooleanQuery(String.format(SELECT_EXISTS, query.toString()),
+        params);
+  }
+
+  public static int minInt(String tableName, String column)
+      throws StorageException {
+    return executeIntAggrQuery(String.format(MIN, column, tableName));
   }
 
-  public static int minInt(String tableName, String column, String criterion)
+  public static int maxInt(String tableName, String column)
       throws StorageException {
+    return executeIntAggrQuery(String.format(MAX, column, tableName));
+  }
+
+  public static int minInt(String tableName, String column, String criterion,
+      Object... params) throws StorageException {
     StringBuilder query =
         new StringBuilder(String.format(MIN, column, tableName));
     query.append(" where ").append(criterion);
-    return executeIntAggrQuery(query.toString());
+    return executeIntAggrQuery(query.toString(), params);
   }
   
-  public static int maxInt(String tableName, String column, String criterion)
-      throws StorageException {
+  public static int maxInt(String tableName, String column, String criterion,
+      Object... params) throws StorageException {
     StringBuilder query =
         new StringBuilder(String.format(MAX, column, tableName));
     query.append(" where ").append(criterion);
-    return executeIntAggrQuery(query.toString());
+    return executeIntAggrQuery(query.toString(), params);
   }
 
-  private static int executeIntAggrQuery(final String query)
+  static int executeIntAggrQuery(final String query, Object... params)
       throws StorageException {
     return execute(query, new ResultSetHandler<Integer>() {
       @Override
@@ -116,11 +162,11 @@ public class MySQLQueryHelper {
         }
         return result.getInt(1);
       }
-    });
+    }, params);
   }
   
-  private static boolean executeBooleanQuery(final String query)
-      throws StorageException {
+  private static boolean executeBooleanQuery(final String query,
+      Object... params) throws StorageException {
     return execute(query, new ResultSetHandler<Boolean>() {
       @Override
       public Boolean handle(ResultSet result) throws SQLException, StorageException {
@@ -130,24 +176,101 @@ public class MySQLQueryHelper {
         }
         return result.getBoolean(1);
       }
-    });
+    }, params);
   }
   
   public static interface ResultSetHandler<R> {
     R handle(ResultSet result) throws SQLException, StorageException;
   }
-  
-  public static <R> R execute(String query, ResultSetHandler<R> handler)
-      throws StorageException {
+
+  /**
+   * Runs query with params bound to its ? in order. The statement and the
+   * result set are closed before the connection goes back to the pool.
+   */
+  public static <R> R execute(String query, ResultSetHandler<R> handler,
+      Object... params) throws StorageException {
+    return executeQuery(query, handler, false, params);
+  }
+
+  /**
+   * Like {@link #execute(String, ResultSetHandler, Object...)}, but the rows
+   * are streamed from the server one by one as the handler reads them
+   * instead of being buffered by the driver before the handler is called.
+   * Use it for large results that the handler folds into a compact
+   * structure. The connection is busy until the handler returns, so the
+   * handler must not run other queries.
+   */
+  public static <R> R stream(String query, ResultSetHandler<R> handler,
+      Object... params) throws StorageException {
+    return executeQuery(query, handler, true, params);
+  }
+
+  private static <R> R executeQuery(String query,
+      ResultSetHandler<R> handler, boolean streaming, Object... params) throws StorageException {
+    PreparedStatement s = null;
+    ResultSet result = null;
     try {
       Connection conn = connector.obtainSession();
-      PreparedStatement s = conn.prepareStatement(query);
-      ResultSet result = s.executeQuery();
+      if (streaming) {
+        s = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+            ResultSet.CONCUR_READ_ONLY);
+        // Connector/J streams the result row by row for this fetch size
+        s.setFetchSize(Integer.MIN_VALUE);
+      } else {
+        s = conn.prepareStatement(query);
+      }
+      for (int i = 0; i < params.length; i++) {
+        s.setObject(i + 1, params[i]);
+      }
+      result = s.executeQuery();
       return handler.handle(result);
     } catch (SQLException ex) {
-      throw new StorageException(ex);
+      connector.recordError(ex);
+      throw HopsSQLExceptionHelper.wrap(ex);
     } finally {
+      close(result, s);
       connector.closeSession();
     }
   }
+
+  /**
+   * Runs the update query with params bound to its ? in order.
+   *
+   * @return the number of rows changed
+   */
+  public static int executeUpdate(String query, Object... params)
+      throws StorageException {
+    PreparedStatement s = null;
+    try {
+      Connection conn = connector.obtainSession();
+      s = conn.prepareStatement(query);
+      for (int i = 0; i < params.length; i++) {
+        s.setObject(i + 1, params[i]);
+      }
+      return s.executeUpdate();
+    } catch (SQLException ex) {
+      connector.recordError(ex);
+      throw HopsSQLExceptionHelper.wrap(ex);
+    } finally {
+      close(null, s);
+      connector.closeSession();
+    }
+  }
+
+  static void close(ResultSet result, Statement s) {
+    try {
+      if (result != null) {
+        result.close();
+      }
+    } catch (SQLException ex) {
+      LOG.warn("could not close result set", ex);
+    }
+    try {
+      if (s != null) {
+        s.close();
+      }
+    } catch (SQLException ex) {
+      LOG.warn("could not close statement", ex);
+    }
+  }
 }
@@ -0,0 +1,153 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.mysqlserver;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.hops.metadata.ndb.metrics.LatencyHistogram;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One mysqld and its connection pool, with the bookkeeping needed to spread
+ * the helper queries over several of them.
+ * <p/>
+ * An endpoint is taken out of rotation after max_failures consecutive
+ * connection failures. Every retry_interval ms one request probes it, and
+ * a successful checkout puts it back. Timeouts of a pool that is only busy
+ * do not count as failures.
+ */
+class MysqlEndpoint {
+
+  static final Log LOG = LogFactory.getLog(MysqlEndpoint.class);
+
+  private final String name;
+  private final HikariDataSource pool;
+  private final int maxFailures;
+  private final long retryInterval;
+  private final AtomicInteger outstanding = new AtomicInteger(0);
+  private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+  private final AtomicLong retryAt = new AtomicLong(0);
+  private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+  MysqlEndpoint(String name, HikariDataSource pool, int maxFailures,
+      long retryInterval) {
+    this.name = name;
+    this.pool = pool;
+    this.maxFailures = maxFailures;
+    this.retryInterval = retryInterval;
+  }
+
+  Connection getConnection() throws SQLException {
+    outstanding.incrementAndGet();
+    try {
+      Connection conn = pool.getConnection();
+      if (consecutiveFailures.getAndSet(0) >= maxFailures) {
+        LOG.info("mysqld " + name + " is back in rotation");
+      }
+      return conn;
+    } catch (SQLException e) {
+      outstanding.decrementAndGet();
+      if (isConnectionFailure(e)) {
+        failed();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * @return whether e means that mysqld could not be reached, SQLState
+   * class 08. Hikari reports a checkout that timed out as a transient
+   * connection exception, which carries the state of the last failure to
+   * open a connection if there was one, and no state if all connections
+   * were just in use.
+   */
+  static boolean isConnectionFailure(SQLException e) {
+    if (e instanceof SQLTransientConnectionException) {
+      Throwable cause = e.getCause();
+      return cause instanceof SQLException &&
+          isConnectionState(((SQLException) cause).getSQLState());
+    }
+    return isConnectionState(e.getSQLState());
+  }
+
+  private static boolean isConnectionState(String sqlState) {
+    return sqlState != null && sqlState.startsWith("08");
+  }
+
+  /**
+   * Called when a connection of this endpoint goes back to its pool.
+   *
+   * @param startNanos
+   *     when the connection was taken from the pool
+   */
+  void returned(long startNanos) {
+    outstanding.decrementAndGet();
+    requestLatency.recordSince(startNanos);
+  }
+
+  /**
+   * Counts a failure to reach this mysqld.
+   */
+  void failed() {
+    if (consecutiveFailures.incrementAndGet() >= maxFailures) {
+      if (System.currentTimeMillis() >= retryAt.get()) {
+        LOG.warn("Taking mysqld " + name + " out of rotation after " +
+            consecutiveFailures.get() + " failures");
+      }
+      retryAt.set(System.currentTimeMillis() + retryInterval);
+    }
+  }
+
+  boolean isHealthy() {
+    return consecutiveFailures.get() < maxFailures;
+  }
+
+  /**
+   * @return whether the caller should probe this endpoint, which is out of
+   * rotation. Only one caller per retry interval gets true.
+   */
+  boolean claimProbe() {
+    long due = retryAt.get();
+    long now = System.currentTimeMillis();
+    return !isHealthy() && now >= due &&
+        retryAt.compareAndSet(due, now + retryInterval);
+  }
+
+  int getOutstanding() {
+    return outstanding.get();
+  }
+
+  String getName() {
+    return name;
+  }
+
+  LatencyHistogram getRequestLatency() {
+    return requestLatency;
+  }
+
+  void close() {
+    pool.close();
+  }
+}
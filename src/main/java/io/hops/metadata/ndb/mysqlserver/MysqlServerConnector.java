@@ -24,6 +24,8 @@ import com.zaxxer.hikari.HikariDataSource;
 import io.hops.StorageConnector;
 import io.hops.exception.StorageException;
 import io.hops.metadata.common.EntityDataAccess;
+import io.hops.metadata.ndb.metrics.LatencySnapshot;
+import io.hops.metadata.ndb.metrics.MBeans;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -31,29 +33,56 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import javax.management.ObjectName;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 
 /**
  * This class presents a singleton connector to Mysql Server. It creates
  * connections to Mysql Server and loads the driver.
+ * <p/>
+ * io.hops.metadata.ndb.mysqlserver.host may list several mysqld, as
+ * host[:port] separated by commas, each with a pool of
+ * connection_pool_size connections. Every connection is taken from the
+ * endpoint with the fewest checked out connections among those in
+ * rotation, and from the next one if that fails.
  */
-public class MysqlServerConnector implements StorageConnector<Connection> {
+public class MysqlServerConnector
+    implements StorageConnector<Connection>, MysqlServerConnectorMXBean {
 
   static final Log LOG = LogFactory.getLog(MysqlServerConnector.class);
   private final static MysqlServerConnector instance =
           new MysqlServerConnector();
   private Properties conf;
   /**
-   * Never access this variable directly. Use getConnectionPool
+   * Never access this variable directly. Use getEndpoints
    *
-   * @see MysqlServerConnector#getConnectionPool()
+   * @see MysqlServerConnector#getEndpoints()
    */
-  private static volatile HikariDataSource connectionPool;
-  private ThreadLocal<Connection> connection = new ThreadLocal<Connection>();
+  private static volatile MysqlEndpoint[] endpoints;
+  private ObjectName mbeanName;
+  private ThreadLocal<Borrowed> connection = new ThreadLocal<Borrowed>();
+  private ThreadLocal<Integer> scopeDepth = new ThreadLocal<Integer>();
+
+  /**
+   * A connection held by a thread, and where it came from.
+   */
+  private static class Borrowed {
+    private final Connection conn;
+    private final MysqlEndpoint endpoint;
+    private final long startNanos;
+
+    Borrowed(Connection conn, MysqlEndpoint endpoint, long startNanos) {
+      this.conn = conn;
+      this.endpoint = endpoint;
+      this.startNanos = startNanos;
+    }
+  }
 
   public static MysqlServerConnector getInstance() {
     return instance;
@@ -64,39 +93,146 @@ public class MysqlServerConnector implements StorageConnector<Connection> {
     this.conf = conf;
   }
 
-  private void initializeConnectionPool(Properties conf) {
+  private void initializeEndpoints(Properties conf) {
+    String defaultPort = conf.getProperty(
+            io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_PORT);
+    int maxFailures = Integer.parseInt(conf.getProperty(
+            io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_MAX_FAILURES,
+            "3").trim());
+    long retryInterval = Long.parseLong(conf.getProperty(
+            io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_RETRY_INTERVAL,
+            "10000").trim());
+    String[] hosts = conf.getProperty(
+            io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_HOST)
+            .split(",");
+    MysqlEndpoint[] created = new MysqlEndpoint[hosts.length];
+    for (int i = 0; i < hosts.length; i++) {
+      String host = hosts[i].trim();
+      String port = defaultPort;
+      int colon = host.indexOf(':');
+      if (colon >= 0) {
+        port = host.substring(colon + 1);
+        host = host.substring(0, colon);
+      }
+      created[i] = new MysqlEndpoint(host + ":" + port,
+          createPool(conf, host, port), maxFailures, retryInterval);
+    }
+    if (created.length > 1) {
+      LOG.info("Balancing mysqld queries over " + created.length +
+          " servers");
+    }
+    endpoints = created;
+    mbeanName = MBeans.register("MysqlServerConnector", this);
+  }
+
+  private static HikariDataSource createPool(Properties conf, String host,
+      String port) {
     HikariConfig config = new HikariConfig();
     config.setMaximumPoolSize(Integer.valueOf(conf.getProperty(
             io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_CONNECTION_POOL_SIZE)));
     config.setDataSourceClassName(conf.getProperty(
             io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_DATA_SOURCE_CLASS_NAME));
-    config.addDataSourceProperty("serverName", conf.getProperty(
-            io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_HOST));
-    config.addDataSourceProperty("port", conf.getProperty(
-            io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_PORT));
+    config.addDataSourceProperty("serverName", host);
+    config.addDataSourceProperty("port", port);
     config.addDataSourceProperty("databaseName",
             conf.getProperty(Constants.PROPERTY_CLUSTER_DATABASE));
     config.addDataSourceProperty("user", conf.getProperty(
             io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_USERNAME));
     config.addDataSourceProperty("password", conf.getProperty(
             io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_PASSWORD));
-
-    connectionPool = new HikariDataSource(config);
+    // statements are prepared once per pooled connection by the server and
+    // looked up by their SQL text on later calls
+    int prepStmtCacheSize = Integer.parseInt(conf.getProperty(
+            io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_PREP_STMT_CACHE_SIZE,
+            "250"));
+    config.addDataSourceProperty("useServerPrepStmts", conf.getProperty(
+            io.hops.metadata.ndb.mysqlserver.Constants.PROPERTY_MYSQL_USE_SERVER_PREP_STMTS,
+            "true"));
+    config.addDataSourceProperty("cachePrepStmts", prepStmtCacheSize > 0);
+    config.addDataSourceProperty("prepStmtCacheSize", prepStmtCacheSize);
+    config.addDataSourceProperty("prepStmtCacheSqlLimit", 2048);
+
+    return new HikariDataSource(config);
   }
 
   @Override
   public Connection obtainSession() throws StorageException {
-    Connection conn = connection.get();
-    if (conn == null) {
-      HikariDataSource connectionPool = getConnectionPool();
+    Borrowed borrowed = connection.get();
+    if (borrowed == null) {
+      borrowed = borrow();
+      connection.set(borrowed);
+    }
+    return borrowed.conn;
+  }
+
+  /**
+   * Takes a connection from the endpoint in rotation with the fewest
+   * outstanding connections, trying the others in the same way if that
+   * fails. An endpoint out of rotation is probed by one request per retry
+   * interval, and used by all only when no endpoint is in rotation.
+   */
+  private Borrowed borrow() throws StorageException {
+    MysqlEndpoint[] endpoints = getEndpoints();
+    boolean[] tried = new boolean[endpoints.length];
+    boolean anyHealthy = false;
+    SQLException failure = null;
+    for (int i = 0; i < endpoints.length; i++) {
+      anyHealthy |= endpoints[i].isHealthy();
+      if (endpoints[i].claimProbe()) {
+        tried[i] = true;
+        try {
+          return borrow(endpoints[i]);
+        } catch (SQLException ex) {
+          failure = ex;
+        }
+      }
+    }
+    for (int attempt = 0; attempt < endpoints.length; attempt++) {
+      int selected = -1;
+      for (int i = 0; i < endpoints.length; i++) {
+        if (!tried[i] && (endpoints[i].isHealthy() || !anyHealthy) &&
+            (selected < 0 || endpoints[i].getOutstanding() <
+                endpoints[selected].getOutstanding())) {
+          selected = i;
+        }
+      }
+      if (selected < 0) {
+        break;
+      }
+      tried[selected] = true;
       try {
-        conn = connectionPool.getConnection();
-        connection.set(conn);
+        return borrow(endpoints[selected]);
       } catch (SQLException ex) {
-        throw HopsSQLExceptionHelper.wrap(ex);
+        failure = ex;
       }
     }
-    return conn;
+    if (failure == null) {
+      throw new StorageException("No mysqld is in rotation");
+    }
+    throw HopsSQLExceptionHelper.wrap(failure);
+  }
+
+  private static Borrowed borrow(MysqlEndpoint endpoint) throws SQLException {
+    long startNanos = System.nanoTime();
+    try {
+      return new Borrowed(endpoint.getConnection(), endpoint, startNanos);
+    } catch (SQLException ex) {
+      LOG.debug("Could not connect to mysqld " + endpoint.getName(), ex);
+      throw ex;
+    }
+  }
+
+  /**
+   * Takes the mysqld of the connection of the calling thread out of rotation
+   * if ex shows that the connection to it failed.
+   */
+  public void recordError(SQLException ex) {
+    Borrowed borrowed = connection.get();
+    // SQL state class 08 is a connection exception
+    if (borrowed != null && ex.getSQLState() != null &&
+        ex.getSQLState().startsWith("08")) {
+      borrowed.endpoint.failed();
+    }
   }
 
   /**
@@ -106,25 +242,94 @@ public class MysqlServerConnector implements StorageConnector<Connection> {
    *
    * @return
    */
-  private HikariDataSource getConnectionPool() {
-    if (connectionPool == null) {
+  private MysqlEndpoint[] getEndpoints() {
+    if (endpoints == null) {
       synchronized (this) {
-        if (connectionPool == null) {
-          initializeConnectionPool(conf);
+        if (endpoints == null) {
+          initializeEndpoints(conf);
         }
       }
     }
-    return connectionPool;
+    return endpoints;
   }
 
+  @Override
+  public int getEndpointCount() {
+    return getEndpoints().length;
+  }
+
+  @Override
+  public Map<String, Integer> getOutstandingRequests() {
+    Map<String, Integer> outstanding = new TreeMap<String, Integer>();
+    for (MysqlEndpoint endpoint : getEndpoints()) {
+      outstanding.put(endpoint.getName(), endpoint.getOutstanding());
+    }
+    return outstanding;
+  }
+
+  @Override
+  public Map<String, Boolean> getEndpointHealth() {
+    Map<String, Boolean> health = new TreeMap<String, Boolean>();
+    for (MysqlEndpoint endpoint : getEndpoints()) {
+      health.put(endpoint.getName(), endpoint.isHealthy());
+    }
+    return health;
+  }
+
+  @Override
+  public Map<String, LatencySnapshot> getRequestLatency() {
+    Map<String, LatencySnapshot> latency =
+        new TreeMap<String, LatencySnapshot>();
+    for (MysqlEndpoint endpoint : getEndpoints()) {
+      latency.put(endpoint.getName(),
+          endpoint.getRequestLatency().snapshot());
+    }
+    return latency;
+  }
+
+  /**
+   * Starts a scope in which the connection of the calling thread, once
+   * obtained, is kept instead of going back to the pool after every helper
+   * call, so that a group of calls such as a series of counts checks it out
+   * of the pool once. Scopes nest; the connection is returned by the
+   * {@link #endScope()} of the outermost one, which must be called in a
+   * finally block.
+   */
+  public void beginScope() {
+    Integer depth = scopeDepth.get();
+    scopeDepth.set(depth == null ? 1 : depth + 1);
+  }
+
+  public void endScope() throws StorageException {
+    Integer depth = scopeDepth.get();
+    if (depth == null) {
+      return;
+    }
+    if (depth > 1) {
+      scopeDepth.set(depth - 1);
+      return;
+    }
+    scopeDepth.remove();
+    closeSession();
+  }
+
+  /**
+   * Returns the connection of the calling thread to the pool, unless the
+   * thread is in a scope.
+   */
   public void closeSession() throws StorageException {
-    Connection conn = connection.get();
-    if (conn != null) {
+    if (scopeDepth.get() != null) {
+      return;
+    }
+    Borrowed borrowed = connection.get();
+    if (borrowed != null) {
+      connection.remove();
       try {
-        conn.close();
-        connection.remove();
+        borrowed.conn.close();
       } catch (SQLException ex) {
         throw HopsSQLExceptionHelper.wrap(ex);
+      } finally {
+        borrowed.endpoint.returned(borrowed.startNanos);
       }
     }
   }
@@ -197,9 +402,22 @@ public class MysqlServerConnector implements StorageConnector<Connection> {
     throw new UnsupportedOperationException("Not supported yet.");
   }
 
+  /**
+   * Closes the connection pools. They are opened again on the next use.
+   */
   @Override
   public void stopStorage() {
-    throw new UnsupportedOperationException("Not supported yet.");
+    MysqlEndpoint[] closing;
+    synchronized (this) {
+      closing = endpoints;
+      endpoints = null;
+    }
+    if (closing != null) {
+      MBeans.unregister(mbeanName);
+      for (MysqlEndpoint endpoint : closing) {
+        endpoint.close();
+      }
+    }
   }
 
   @Override
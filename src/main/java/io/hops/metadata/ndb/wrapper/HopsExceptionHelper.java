@@ -21,53 +21,20 @@ package io.hops.metadata.ndb.wrapper;
 import com.mysql.clusterj.ClusterJDatastoreException;
 import com.mysql.clusterj.ClusterJException;
 import io.hops.exception.StorageException;
-import io.hops.exception.TransientStorageException;
-import io.hops.exception.TupleAlreadyExistedException;
 
 public class HopsExceptionHelper {
   public static StorageException wrap(ClusterJException e) {
-    if (isTransient(e)) {
-      return new TransientStorageException(e);
-    } else if (isTupleAlreadyExisted(e)) {
-      return new TupleAlreadyExistedException(e);
-    } else {
-      return new StorageException(e);
-    }
-  }
-
-  private static boolean isTransient(ClusterJException e) {
     if (e instanceof ClusterJDatastoreException) {
-      // http://dev.mysql.com/doc/ndbapi/en/ndb-error-classifications.html
-      // The classifications can be found in ndberror.h and ndberror.c in the ndb sources
-      if (e.getMessage().contains("classification 7")) {
-        // Temporary Resource error (TR)
-        return true;
-      } else if (e.getMessage().contains("classification 8")) {
-        // Node Recovery error (NR)
-        return true;
-      } else if (e.getMessage().contains("classification 9")) {
-        // Overload error (OL)
-        return true;
-      } else if (e.getMessage().contains("classification 10")) {
-        // Timeout expired (TO)
-        return true;
-      } else if (e.getMessage().contains("classification 15")) {
-        // Node shutdown (NS)
-        return true;
-      } else if (e.getMessage().contains("classification 18")) {
-        // Internal temporary (IT)
-        return true;
-      }
-    }
-    return false;
-  }
-
-  private static boolean isTupleAlreadyExisted(ClusterJException e) {
-    if (e instanceof  ClusterJDatastoreException) {
-      if (e.getMessage().contains("code 630")) {
-        return true;
+      ClusterJDatastoreException de = (ClusterJDatastoreException) e;
+      NdbError error = NdbError.of(de);
+      if (error.isTransient()) {
+        return new NdbTransientStorageException(de, error);
+      } else if (error.isTupleAlreadyExisted()) {
+        return new NdbTupleAlreadyExistedException(de, error);
+      } else {
+        return new NdbStorageException(de, error);
       }
     }
-    return false;
+    return new StorageException(e);
   }
 }
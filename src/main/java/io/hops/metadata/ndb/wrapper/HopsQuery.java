@@ -28,6 +28,8 @@ import java.util.Map;
 
 public class HopsQuery<E> {
   private final Query<E> query;
+  private QueryPlanMonitor.QueryPlan plan;
+  private String shape;
 
   public HopsQuery(Query<E> query) {
     this.query = query;
@@ -42,6 +44,10 @@ public class HopsQuery<E> {
   }
 
   public List<E> getResultList() throws StorageException {
+    QueryPlanMonitor monitor = QueryPlanMonitor.get();
+    if (monitor != null) {
+      monitor.beforeExecute(this);
+    }
     try {
       return query.getResultList();
     } catch (ClusterJException e) {
@@ -50,6 +56,10 @@ public class HopsQuery<E> {
   }
 
   public int deletePersistentAll() throws StorageException {
+    QueryPlanMonitor monitor = QueryPlanMonitor.get();
+    if (monitor != null) {
+      monitor.beforeExecute(this);
+    }
     try {
       return query.deletePersistentAll();
     } catch (ClusterJException e) {
@@ -105,4 +115,23 @@ public class HopsQuery<E> {
       throw HopsExceptionHelper.wrap(e);
     }
   }
+
+  QueryPlanMonitor.QueryPlan getPlan() {
+    return plan;
+  }
+
+  void setPlan(QueryPlanMonitor.QueryPlan plan) {
+    this.plan = plan;
+  }
+
+  /**
+   * @return the name of the shape the query was built from, or null
+   */
+  String getShape() {
+    return shape;
+  }
+
+  void setShape(String shape) {
+    this.shape = shape;
+  }
 }
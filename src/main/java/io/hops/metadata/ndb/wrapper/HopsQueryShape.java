@@ -0,0 +1,59 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.wrapper;
+
+import io.hops.exception.StorageException;
+
+/**
+ * A named query on one DTO class whose definition never changes, only its
+ * parameters. {@link HopsSession#createQuery(HopsQueryShape)} builds it once
+ * per session and hands out the same query afterwards, so shapes are meant
+ * to be static constants of the data access classes. Limits and ordering
+ * set on the returned query stay set, callers that use them must set them
+ * on every call.
+ */
+public abstract class HopsQueryShape<T> {
+  private final Class<T> dtoClass;
+  private final String name;
+
+  protected HopsQueryShape(Class<T> dtoClass, String name) {
+    this.dtoClass = dtoClass;
+    this.name = name;
+  }
+
+  public Class<T> getDTOClass() {
+    return dtoClass;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Sets the predicate of the query, with parameters for the values that
+   * change between calls.
+   */
+  protected abstract void define(HopsQueryDomainType<T> dobj)
+      throws StorageException;
+
+  @Override
+  public String toString() {
+    return dtoClass.getSimpleName() + "#" + name;
+  }
+}
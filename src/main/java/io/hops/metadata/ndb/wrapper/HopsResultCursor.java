@@ -0,0 +1,121 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.wrapper;
+
+import io.hops.exception.StorageException;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Hands out the rows of a scan one at a time, reading them a page at a time.
+ * A row is released as soon as the next one is taken or the cursor is
+ * closed, and the cursor drops its reference to it, so the cursor never
+ * holds more than one page of DTOs.
+ * <p/>
+ * ClusterJ does not implement Query.execute, so each page is read with
+ * getResultList by a bounded query that starts after the last row handed
+ * out. The pages are separate reads, rows changed between two pages may be
+ * seen in their old or new state.
+ */
+public class HopsResultCursor<E> {
+
+  /**
+   * Reads the pages of a cursor.
+   */
+  public interface Pages<E> {
+    /**
+     * @param last
+     *     the last row of the previous page, null for the first page
+     * @param size
+     *     the max number of rows to read
+     * @return the rows that follow last, in a stable order
+     */
+    List<E> read(E last, int size) throws StorageException;
+  }
+
+  private final HopsSession session;
+  private final Pages<E> pages;
+  private final int pageSize;
+  private List<E> rows;
+  private int position = 0;
+  private E current;
+  private boolean lastPage = false;
+  private boolean closed = false;
+
+  HopsResultCursor(HopsSession session, Pages<E> pages, int pageSize) {
+    this.session = session;
+    this.pages = pages;
+    this.pageSize = pageSize;
+  }
+
+  public boolean hasNext() throws StorageException {
+    if (closed) {
+      return false;
+    }
+    if (rows != null && position < rows.size()) {
+      return true;
+    }
+    if (lastPage) {
+      return false;
+    }
+    // the current row is the last one of the previous page, it is released
+    // by the following call to next
+    rows = pages.read(rows == null ? null : current, pageSize);
+    position = 0;
+    lastPage = rows.size() < pageSize;
+    return !rows.isEmpty();
+  }
+
+  /**
+   * @return the next row, valid until the following call to next or close
+   */
+  public E next() throws StorageException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    releaseCurrent();
+    current = rows.set(position++, null);
+    return current;
+  }
+
+  /**
+   * Releases the current and all remaining rows of the page.
+   */
+  public void close() throws StorageException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    releaseCurrent();
+    if (rows != null) {
+      List<E> remaining = rows.subList(position, rows.size());
+      rows = null;
+      session.release(remaining);
+    }
+  }
+
+  private void releaseCurrent() throws StorageException {
+    if (current != null) {
+      E row = current;
+      current = null;
+      session.release(row);
+    }
+  }
+}
@@ -26,9 +26,22 @@ import com.mysql.clusterj.Transaction;
 import com.mysql.clusterj.query.QueryBuilder;
 import io.hops.exception.StorageException;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * A session is used by one thread at a time, so the transaction and query
+ * builder wrappers are created once per session and reused instead of
+ * being allocated on every call. The same goes for the queries of
+ * {@link HopsQueryShape}s, which are cached until the session is closed.
+ */
 public class HopsSession {
   private final Session session;
+  private Transaction transaction;
+  private HopsTransaction hopsTransaction;
+  private HopsQueryBuilder hopsQueryBuilder;
+  private final Map<HopsQueryShape<?>, HopsQuery<?>> queryCache =
+      new HashMap<HopsQueryShape<?>, HopsQuery<?>>();
 
   public HopsSession(Session session) {
     this.session = session;
@@ -36,8 +49,11 @@ public class HopsSession {
 
   public HopsQueryBuilder getQueryBuilder() throws StorageException {
     try {
-      QueryBuilder queryBuilder = session.getQueryBuilder();
-      return new HopsQueryBuilder(queryBuilder);
+      if (hopsQueryBuilder == null) {
+        QueryBuilder queryBuilder = session.getQueryBuilder();
+        hopsQueryBuilder = new HopsQueryBuilder(queryBuilder);
+      }
+      return hopsQueryBuilder;
     } catch (ClusterJException e) {
       throw HopsExceptionHelper.wrap(e);
     }
@@ -54,6 +70,35 @@ public class HopsSession {
     }
   }
 
+  /**
+   * Returns the query of shape, building it on the first call in this
+   * session. Bind the parameters before executing it.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> HopsQuery<T> createQuery(HopsQueryShape<T> shape)
+      throws StorageException {
+    HopsQuery<T> query = (HopsQuery<T>) queryCache.get(shape);
+    if (query == null) {
+      HopsQueryDomainType<T> dobj =
+          getQueryBuilder().createQueryDefinition(shape.getDTOClass());
+      shape.define(dobj);
+      query = createQuery(dobj);
+      query.setShape(shape.toString());
+      queryCache.put(shape, query);
+    }
+    return query;
+  }
+
+  /**
+   * Returns a cursor that reads the rows pageSize at a time from pages and
+   * releases each row once the caller moves past it. Nothing is read before
+   * the first call to hasNext.
+   */
+  public <T> HopsResultCursor<T> openCursor(HopsResultCursor.Pages<T> pages,
+      int pageSize) {
+    return new HopsResultCursor<T>(this, pages, pageSize);
+  }
+
   public <T> T find(Class<T> aClass, Object o) throws StorageException {
     try {
       return session.find(aClass, o);
@@ -197,14 +242,19 @@ public class HopsSession {
 
   public HopsTransaction currentTransaction() throws StorageException {
     try {
-      Transaction transaction = session.currentTransaction();
-      return new HopsTransaction(transaction);
+      Transaction current = session.currentTransaction();
+      if (current != transaction) {
+        transaction = current;
+        hopsTransaction = new HopsTransaction(current);
+      }
+      return hopsTransaction;
     } catch (ClusterJException e) {
       throw HopsExceptionHelper.wrap(e);
     }
   }
 
   public void close() throws StorageException {
+    queryCache.clear();
     try {
       session.close();
     } catch (ClusterJException e) {
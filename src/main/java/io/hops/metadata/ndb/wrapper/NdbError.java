@@ -0,0 +1,109 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.wrapper;
+
+import com.mysql.clusterj.ClusterJDatastoreException;
+
+/**
+ * The NDB error behind a failed operation, taken once from the
+ * ClusterJDatastoreException instead of searching its message.
+ */
+public final class NdbError {
+
+  /**
+   * Tuple already existed when attempting to insert.
+   */
+  public static final int TUPLE_ALREADY_EXISTED = 630;
+
+  private final int code;
+  private final int mysqlCode;
+  private final int status;
+  private final NdbErrorClassification classification;
+
+  public NdbError(int code, int mysqlCode, int status, int classification) {
+    this.code = code;
+    this.mysqlCode = mysqlCode;
+    this.status = status;
+    this.classification = NdbErrorClassification.forCode(classification);
+  }
+
+  public static NdbError of(ClusterJDatastoreException e) {
+    return new NdbError(e.getCode(), e.getMysqlCode(), e.getStatus(),
+        e.getClassification());
+  }
+
+  /**
+   * Finds the NDB error carried by e or one of its causes.
+   *
+   * @return the error, or null if e was not caused by an NDB error
+   */
+  public static NdbError of(Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof NdbException) {
+        return ((NdbException) t).getNdbError();
+      } else if (t instanceof ClusterJDatastoreException) {
+        return of((ClusterJDatastoreException) t);
+      }
+      if (t.getCause() == t) {
+        break;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the NDB error code
+   */
+  public int getCode() {
+    return code;
+  }
+
+  /**
+   * @return the MySQL error code the NDB error maps to
+   */
+  public int getMysqlCode() {
+    return mysqlCode;
+  }
+
+  /**
+   * @return the NDB error status: 0 success, 1 temporary, 2 permanent,
+   * 3 unknown
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  public NdbErrorClassification getClassification() {
+    return classification;
+  }
+
+  public boolean isTransient() {
+    return classification.isTransient();
+  }
+
+  public boolean isTupleAlreadyExisted() {
+    return code == TUPLE_ALREADY_EXISTED;
+  }
+
+  @Override
+  public String toString() {
+    return "NdbError{code=" + code + ", mysqlCode=" + mysqlCode +
+        ", status=" + status + ", classification=" + classification + "}";
+  }
+}
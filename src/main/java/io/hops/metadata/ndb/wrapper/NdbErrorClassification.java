@@ -0,0 +1,93 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.wrapper;
+
+/**
+ * NDB error classifications, as reported by ClusterJ in
+ * ClusterJDatastoreException.getClassification().
+ * See http://dev.mysql.com/doc/ndbapi/en/ndb-error-classifications.html and
+ * ndberror_classification_enum in ndberror.h of the ndb sources.
+ */
+public enum NdbErrorClassification {
+  NO_ERROR(0, false),
+  APPLICATION(1, false),
+  NO_DATA_FOUND(2, false),
+  CONSTRAINT_VIOLATION(3, false),
+  SCHEMA_ERROR(4, false),
+  USER_DEFINED(5, false),
+  INSUFFICIENT_SPACE(6, false),
+  TEMPORARY_RESOURCE(7, true),
+  NODE_RECOVERY(8, true),
+  OVERLOAD(9, true),
+  TIMEOUT_EXPIRED(10, true),
+  UNKNOWN_RESULT(11, false),
+  INTERNAL_ERROR(12, false),
+  FUNCTION_NOT_IMPLEMENTED(13, false),
+  UNKNOWN_ERROR_CODE(14, false),
+  NODE_SHUTDOWN(15, true),
+  CONFIGURATION(16, false),
+  SCHEMA_OBJECT_ALREADY_EXISTS(17, false),
+  INTERNAL_TEMPORARY(18, true),
+  /**
+   * Not an NDB error, or a classification this version does not know.
+   */
+  OTHER(-1, false);
+
+  private static final NdbErrorClassification[] BY_CODE =
+      new NdbErrorClassification[INTERNAL_TEMPORARY.code + 1];
+
+  static {
+    for (NdbErrorClassification c : values()) {
+      if (c.code >= 0) {
+        BY_CODE[c.code] = c;
+      }
+    }
+  }
+
+  private final int code;
+  private final boolean isTransient;
+
+  NdbErrorClassification(int code, boolean isTransient) {
+    this.code = code;
+    this.isTransient = isTransient;
+  }
+
+  public int getCode() {
+    return code;
+  }
+
+  public boolean isTransient() {
+    return isTransient;
+  }
+
+  public static NdbErrorClassification forCode(int code) {
+    if (code < 0 || code >= BY_CODE.length) {
+      return OTHER;
+    }
+    return BY_CODE[code];
+  }
+
+  /**
+   * @return the classification of the NDB error carried by e, or OTHER
+   */
+  public static NdbErrorClassification of(Throwable e) {
+    NdbError error = NdbError.of(e);
+    return error == null ? OTHER : error.getClassification();
+  }
+}
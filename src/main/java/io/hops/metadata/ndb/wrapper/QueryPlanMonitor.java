@@ -0,0 +1,194 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.wrapper;
+
+import com.mysql.clusterj.Query;
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.metrics.MBeans;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.ObjectName;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional instrumentation that explains the first query run by each DAL
+ * method, records its scan type and index, and counts the executions of
+ * queries that turned out to be table scans. Enabled with
+ * io.hops.query.explain=true.
+ * <p/>
+ * Queries of a {@link HopsQueryShape} are keyed by the shape, e.g.
+ * ReplicaDTO#byINodeId, since the shapes of parallel scans and in-list
+ * queries run from shared code, possibly on pool threads. They are reused
+ * and explained once per session. For other queries the DAL method is found
+ * by walking the stack on every execution while the monitor is enabled.
+ */
+public class QueryPlanMonitor implements QueryPlanMonitorMXBean {
+
+  static final Log LOG = LogFactory.getLog(QueryPlanMonitor.class);
+
+  public static final String ENABLED = "io.hops.query.explain";
+
+  private static final String WRAPPER_PACKAGE =
+      QueryPlanMonitor.class.getPackage().getName() + ".";
+
+  private static volatile QueryPlanMonitor instance = null;
+
+  private final ConcurrentMap<String, QueryPlan> plans =
+      new ConcurrentHashMap<String, QueryPlan>();
+  private final ConcurrentMap<String, AtomicLong> tableScansByMethod =
+      new ConcurrentHashMap<String, AtomicLong>();
+  private final AtomicLong tableScans = new AtomicLong(0);
+  private ObjectName mbeanName;
+
+  public static void configure(Properties conf) {
+    if (Boolean.parseBoolean(conf.getProperty(ENABLED, "false"))) {
+      QueryPlanMonitor monitor = new QueryPlanMonitor();
+      monitor.mbeanName = MBeans.register("QueryPlanMonitor", monitor);
+      instance = monitor;
+      LOG.info("Query plan monitoring is enabled");
+    }
+  }
+
+  public static void stop() {
+    QueryPlanMonitor monitor = instance;
+    instance = null;
+    if (monitor != null) {
+      MBeans.unregister(monitor.mbeanName);
+    }
+  }
+
+  /**
+   * @return the monitor, or null if monitoring is disabled
+   */
+  static QueryPlanMonitor get() {
+    return instance;
+  }
+
+  /**
+   * Called with the parameters bound, right before query runs.
+   */
+  void beforeExecute(HopsQuery<?> query) {
+    QueryPlan plan = query.getPlan();
+    if (plan == null) {
+      String method = query.getShape();
+      if (method == null) {
+        method = callingMethod();
+      }
+      plan = plans.get(method);
+      if (plan == null) {
+        plan = explain(method, query);
+        QueryPlan existing = plans.putIfAbsent(method, plan);
+        if (existing != null) {
+          plan = existing;
+        } else if (plan.isTableScan()) {
+          LOG.warn(method + " runs a table scan");
+        } else if (LOG.isDebugEnabled()) {
+          LOG.debug(method + " runs a " + plan);
+        }
+      }
+      query.setPlan(plan);
+    }
+    if (plan.isTableScan()) {
+      tableScans.incrementAndGet();
+      AtomicLong counter = tableScansByMethod.get(plan.method);
+      if (counter == null) {
+        AtomicLong created = new AtomicLong(0);
+        counter = tableScansByMethod.putIfAbsent(plan.method, created);
+        if (counter == null) {
+          counter = created;
+        }
+      }
+      counter.incrementAndGet();
+    }
+  }
+
+  private static QueryPlan explain(String method, HopsQuery<?> query) {
+    try {
+      Map<String, Object> explained = query.explain();
+      Object index = explained.get(Query.INDEX_USED);
+      return new QueryPlan(method,
+          String.valueOf(explained.get(Query.SCAN_TYPE)),
+          index == null ? null : index.toString());
+    } catch (StorageException e) {
+      LOG.debug("Failed to explain the query of " + method, e);
+      return new QueryPlan(method, "UNKNOWN", null);
+    }
+  }
+
+  private static String callingMethod() {
+    for (StackTraceElement frame : new Throwable().getStackTrace()) {
+      String cls = frame.getClassName();
+      if (!cls.startsWith(WRAPPER_PACKAGE)) {
+        return cls.substring(cls.lastIndexOf('.') + 1) + "." +
+            frame.getMethodName();
+      }
+    }
+    return "unknown";
+  }
+
+  @Override
+  public Map<String, String> getQueryPlans() {
+    Map<String, String> map = new TreeMap<String, String>();
+    for (QueryPlan plan : plans.values()) {
+      map.put(plan.method, plan.toString());
+    }
+    return map;
+  }
+
+  @Override
+  public Map<String, Long> getTableScansByMethod() {
+    Map<String, Long> map = new TreeMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> e : tableScansByMethod.entrySet()) {
+      map.put(e.getKey(), e.getValue().get());
+    }
+    return map;
+  }
+
+  @Override
+  public long getTableScans() {
+    return tableScans.get();
+  }
+
+  static class QueryPlan {
+    private final String method;
+    private final String scanType;
+    private final String index;
+
+    QueryPlan(String method, String scanType, String index) {
+      this.method = method;
+      this.scanType = scanType;
+      this.index = index;
+    }
+
+    boolean isTableScan() {
+      return Query.SCAN_TYPE_TABLE_SCAN.equals(scanType);
+    }
+
+    @Override
+    public String toString() {
+      return index == null ? scanType : scanType + " " + index;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.wrapper;
+
+import java.util.Map;
+
+/**
+ * Query plans seen by the {@link QueryPlanMonitor}, published over JMX as
+ * io.hops.metadata.ndb:type=QueryPlanMonitor. Keys are the DAL methods that
+ * ran the queries.
+ */
+public interface QueryPlanMonitorMXBean {
+
+  /**
+   * @return the scan type of each query shape or DAL method, followed by the
+   * index used
+   */
+  Map<String, String> getQueryPlans();
+
+  /**
+   * @return how often each query shape or DAL method ran a table scan
+   */
+  Map<String, Long> getTableScansByMethod();
+
+  long getTableScans();
+}
@@ -0,0 +1,192 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.util;
+
+import java.util.Arrays;
+
+/**
+ * The keys of an open addressing hash table of primitive longs, with linear
+ * probing. Removed keys leave a tombstone until the next rehash, so that
+ * iterators can remove keys without moving others.
+ * <p/>
+ * The collections built on it keep their values in arrays parallel to the
+ * keys and move them on rehash through {@link #resizeValues(int)} and
+ * {@link #moveValue(Object, int, int)}.
+ */
+abstract class LongHashKeys {
+
+  private static final byte FREE = 0;
+  private static final byte FULL = 1;
+  private static final byte REMOVED = 2;
+
+  private static final float LOAD_FACTOR = 0.75f;
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private long[] keys;
+  private byte[] states;
+  private int size = 0;
+  private int used = 0; // full and removed slots
+  private int threshold;
+
+  LongHashKeys(int expectedSize) {
+    allocate(capacityFor(expectedSize));
+  }
+
+  /**
+   * Allocates the values for capacity slots.
+   *
+   * @return the previous values
+   */
+  abstract Object resizeValues(int capacity);
+
+  /**
+   * Copies the value of slot from in oldValues to slot to.
+   */
+  abstract void moveValue(Object oldValues, int from, int to);
+
+  final int capacity() {
+    return keys.length;
+  }
+
+  final int size() {
+    return size;
+  }
+
+  final long keyAt(int slot) {
+    return keys[slot];
+  }
+
+  /**
+   * @return the slot of key, or -1 if it is not in the table
+   */
+  final int find(long key) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    while (states[slot] != FREE) {
+      if (states[slot] == FULL && keys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Adds key if it is not in the table yet.
+   *
+   * @return the slot of key, or -(slot + 1) if the key was added
+   */
+  final int insert(long key) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    int removed = -1;
+    while (states[slot] != FREE) {
+      if (states[slot] == FULL) {
+        if (keys[slot] == key) {
+          return slot;
+        }
+      } else if (removed < 0) {
+        removed = slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (removed >= 0) {
+      slot = removed;
+    } else if (used >= threshold) {
+      rehash();
+      return insert(key);
+    } else {
+      used++;
+    }
+    keys[slot] = key;
+    states[slot] = FULL;
+    size++;
+    return -(slot + 1);
+  }
+
+  final void removeAt(int slot) {
+    states[slot] = REMOVED;
+    size--;
+  }
+
+  /**
+   * @return the first used slot from slot on, or -1 if there is none
+   */
+  final int nextSlot(int slot) {
+    for (int i = slot; i < states.length; i++) {
+      if (states[i] == FULL) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  final void clear() {
+    Arrays.fill(states, FREE);
+    size = 0;
+    used = 0;
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    states = new byte[capacity];
+    threshold = capacity == MAX_CAPACITY ? capacity - 1 :
+        (int) (capacity * LOAD_FACTOR);
+  }
+
+  private void rehash() {
+    long[] oldKeys = keys;
+    byte[] oldStates = states;
+    int capacity = Math.max(oldKeys.length, capacityFor(size + 1));
+    if (capacity == oldKeys.length && size + 1 > threshold) {
+      throw new IllegalStateException("The table is full");
+    }
+    allocate(capacity);
+    Object oldValues = resizeValues(capacity);
+    used = size;
+    int mask = capacity - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldStates[i] == FULL) {
+        int slot = hash(oldKeys[i]) & mask;
+        while (states[slot] != FREE) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        states[slot] = FULL;
+        moveValue(oldValues, i, slot);
+      }
+    }
+  }
+
+  private static int capacityFor(int expectedSize) {
+    int capacity = 16;
+    while (capacity < MAX_CAPACITY && capacity * LOAD_FACTOR < expectedSize) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  /**
+   * Spreads sequential ids, such as block ids, over the table.
+   */
+  private static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.util;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of longs kept in an open addressing hash table, 9 bytes per slot or
+ * 12 to 24 bytes per element, instead of about 64 for a HashSet&lt;Long&gt;.
+ * The elements are boxed only when read through the {@link java.util.Set}
+ * methods. Not thread safe, and its iterators are not fail-fast.
+ */
+public class LongHashSet extends AbstractSet<Long> {
+
+  private final LongHashKeys keys;
+
+  public LongHashSet() {
+    this(0);
+  }
+
+  public LongHashSet(int expectedSize) {
+    keys = new LongHashKeys(expectedSize) {
+      @Override
+      Object resizeValues(int capacity) {
+        return null;
+      }
+
+      @Override
+      void moveValue(Object oldValues, int from, int to) {
+      }
+    };
+  }
+
+  public boolean add(long value) {
+    return keys.insert(value) < 0;
+  }
+
+  public boolean contains(long value) {
+    return keys.find(value) >= 0;
+  }
+
+  public boolean remove(long value) {
+    int slot = keys.find(value);
+    if (slot < 0) {
+      return false;
+    }
+    keys.removeAt(slot);
+    return true;
+  }
+
+  @Override
+  public boolean add(Long value) {
+    return add(value.longValue());
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof Long && contains(((Long) o).longValue());
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return o instanceof Long && remove(((Long) o).longValue());
+  }
+
+  @Override
+  public int size() {
+    return keys.size();
+  }
+
+  @Override
+  public void clear() {
+    keys.clear();
+  }
+
+  @Override
+  public Iterator<Long> iterator() {
+    return new Iterator<Long>() {
+      private int next = keys.nextSlot(0);
+      private int last = -1;
+
+      @Override
+      public boolean hasNext() {
+        return next >= 0;
+      }
+
+      @Override
+      public Long next() {
+        if (next < 0) {
+          throw new NoSuchElementException();
+        }
+        last = next;
+        next = keys.nextSlot(next + 1);
+        return keys.keyAt(last);
+      }
+
+      @Override
+      public void remove() {
+        if (last < 0) {
+          throw new IllegalStateException();
+        }
+        keys.removeAt(last);
+        last = -1;
+      }
+    };
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.util;
+
+/**
+ * A map from long to int kept in an open addressing hash table, 13 bytes
+ * per slot or 17 to 35 bytes per entry, instead of about 80 for a
+ * HashMap&lt;Long, Integer&gt;. Null values are not supported. Not thread
+ * safe, and its iterators are not fail-fast.
+ */
+public class LongIntHashMap extends LongKeyedHashMap<Integer> {
+
+  private int[] values;
+
+  public LongIntHashMap() {
+    this(0);
+  }
+
+  public LongIntHashMap(int expectedSize) {
+    super(expectedSize);
+    values = new int[keys.capacity()];
+  }
+
+  public void put(long key, int value) {
+    int slot = keys.insert(key);
+    values[slot < 0 ? -slot - 1 : slot] = value;
+  }
+
+  /**
+   * @return the value of key, or missing if key is not in the map
+   */
+  public int get(long key, int missing) {
+    int slot = keys.find(key);
+    return slot < 0 ? missing : values[slot];
+  }
+
+  @Override
+  Object resizeValues(int capacity) {
+    int[] old = values;
+    values = new int[capacity];
+    return old;
+  }
+
+  @Override
+  void moveValue(Object oldValues, int from, int to) {
+    values[to] = ((int[]) oldValues)[from];
+  }
+
+  @Override
+  Integer valueAt(int slot) {
+    return values[slot];
+  }
+
+  @Override
+  void setValueAt(int slot, Integer value) {
+    values[slot] = value;
+  }
+}
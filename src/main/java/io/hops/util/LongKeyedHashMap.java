@@ -0,0 +1,241 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The {@link Map} view of a hash table with primitive long keys. The keys
+ * and values are boxed only when they are read through it.
+ */
+abstract class LongKeyedHashMap<V> extends AbstractMap<Long, V> {
+
+  final LongHashKeys keys;
+
+  LongKeyedHashMap(int expectedSize) {
+    keys = new LongHashKeys(expectedSize) {
+      @Override
+      Object resizeValues(int capacity) {
+        return LongKeyedHashMap.this.resizeValues(capacity);
+      }
+
+      @Override
+      void moveValue(Object oldValues, int from, int to) {
+        LongKeyedHashMap.this.moveValue(oldValues, from, to);
+      }
+    };
+  }
+
+  abstract Object resizeValues(int capacity);
+
+  abstract void moveValue(Object oldValues, int from, int to);
+
+  abstract V valueAt(int slot);
+
+  abstract void setValueAt(int slot, V value);
+
+  public boolean containsKey(long key) {
+    return keys.find(key) >= 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof Long && containsKey(((Long) key).longValue());
+  }
+
+  @Override
+  public V get(Object key) {
+    if (!(key instanceof Long)) {
+      return null;
+    }
+    int slot = keys.find((Long) key);
+    return slot < 0 ? null : valueAt(slot);
+  }
+
+  @Override
+  public V put(Long key, V value) {
+    int slot = keys.insert(key);
+    if (slot < 0) {
+      setValueAt(-slot - 1, value);
+      return null;
+    }
+    V previous = valueAt(slot);
+    setValueAt(slot, value);
+    return previous;
+  }
+
+  @Override
+  public V remove(Object key) {
+    if (!(key instanceof Long)) {
+      return null;
+    }
+    int slot = keys.find((Long) key);
+    if (slot < 0) {
+      return null;
+    }
+    V previous = valueAt(slot);
+    keys.removeAt(slot);
+    return previous;
+  }
+
+  @Override
+  public int size() {
+    return keys.size();
+  }
+
+  @Override
+  public void clear() {
+    keys.clear();
+  }
+
+  @Override
+  public Set<Entry<Long, V>> entrySet() {
+    return new AbstractSet<Entry<Long, V>>() {
+      @Override
+      public Iterator<Entry<Long, V>> iterator() {
+        return new SlotIterator<Entry<Long, V>>() {
+          @Override
+          Entry<Long, V> at(int slot) {
+            return new SlotEntry(slot);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return keys.size();
+      }
+
+      @Override
+      public void clear() {
+        keys.clear();
+      }
+    };
+  }
+
+  @Override
+  public Set<Long> keySet() {
+    return new AbstractSet<Long>() {
+      @Override
+      public Iterator<Long> iterator() {
+        return new SlotIterator<Long>() {
+          @Override
+          Long at(int slot) {
+            return keys.keyAt(slot);
+          }
+        };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        return containsKey(o);
+      }
+
+      @Override
+      public int size() {
+        return keys.size();
+      }
+
+      @Override
+      public void clear() {
+        keys.clear();
+      }
+    };
+  }
+
+  private abstract class SlotIterator<T> implements Iterator<T> {
+    private int next = keys.nextSlot(0);
+    private int last = -1;
+
+    abstract T at(int slot);
+
+    @Override
+    public boolean hasNext() {
+      return next >= 0;
+    }
+
+    @Override
+    public T next() {
+      if (next < 0) {
+        throw new NoSuchElementException();
+      }
+      last = next;
+      next = keys.nextSlot(next + 1);
+      return at(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      keys.removeAt(last);
+      last = -1;
+    }
+  }
+
+  private class SlotEntry implements Entry<Long, V> {
+    private final int slot;
+
+    SlotEntry(int slot) {
+      this.slot = slot;
+    }
+
+    @Override
+    public Long getKey() {
+      return keys.keyAt(slot);
+    }
+
+    @Override
+    public V getValue() {
+      return valueAt(slot);
+    }
+
+    @Override
+    public V setValue(V value) {
+      V previous = valueAt(slot);
+      setValueAt(slot, value);
+      return previous;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Entry)) {
+        return false;
+      }
+      Entry<?, ?> e = (Entry<?, ?>) o;
+      return getKey().equals(e.getKey()) && getValue().equals(e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return getKey().hashCode() ^ getValue().hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return getKey() + "=" + getValue();
+    }
+  }
+}
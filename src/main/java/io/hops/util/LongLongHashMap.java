@@ -0,0 +1,74 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.util;
+
+/**
+ * A map from long to long kept in an open addressing hash table, 17 bytes
+ * per slot or 23 to 45 bytes per entry, instead of about 88 for a
+ * HashMap&lt;Long, Long&gt;. Null values are not supported. Not thread
+ * safe, and its iterators are not fail-fast.
+ */
+public class LongLongHashMap extends LongKeyedHashMap<Long> {
+
+  private long[] values;
+
+  public LongLongHashMap() {
+    this(0);
+  }
+
+  public LongLongHashMap(int expectedSize) {
+    super(expectedSize);
+    values = new long[keys.capacity()];
+  }
+
+  public void put(long key, long value) {
+    int slot = keys.insert(key);
+    values[slot < 0 ? -slot - 1 : slot] = value;
+  }
+
+  /**
+   * @return the value of key, or missing if key is not in the map
+   */
+  public long get(long key, long missing) {
+    int slot = keys.find(key);
+    return slot < 0 ? missing : values[slot];
+  }
+
+  @Override
+  Object resizeValues(int capacity) {
+    long[] old = values;
+    values = new long[capacity];
+    return old;
+  }
+
+  @Override
+  void moveValue(Object oldValues, int from, int to) {
+    values[to] = ((long[]) oldValues)[from];
+  }
+
+  @Override
+  Long valueAt(int slot) {
+    return values[slot];
+  }
+
+  @Override
+  void setValueAt(int slot, Long value) {
+    values[slot] = value;
+  }
+}
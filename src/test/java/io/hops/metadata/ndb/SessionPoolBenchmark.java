@@ -0,0 +1,101 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the take and return throughput of the session pools, with one
+ * session per thread plus a few spare ones. Not a unit test, run it with
+ * java -cp target/classes:target/test-classes
+ * io.hops.metadata.ndb.SessionPoolBenchmark [seconds per run] [stripes]
+ * <p/>
+ * Striping only pays off with several cores taking sessions at the same
+ * time, on a single core the striped pool is slower than the queue.
+ */
+public class SessionPoolBenchmark {
+
+  private static final int SPARE_SESSIONS = 4;
+
+  public static void main(String[] args) throws Exception {
+    long millis =
+        TimeUnit.SECONDS.toMillis(args.length > 0 ? Long.parseLong(args[0]) : 2);
+    int cpus = Runtime.getRuntime().availableProcessors();
+    int stripes = args.length > 1 ? Integer.parseInt(args[1]) : cpus;
+    System.out.println("cpus=" + cpus + " stripes=" + stripes);
+    for (int threads : new int[]{1, 4, 16, 64}) {
+      // the first round warms up the JIT
+      for (int round = 0; round < 2; round++) {
+        long queue = run(new QueueSessionPool(), threads, millis);
+        long striped = run(new StripedSessionPool(stripes), threads, millis);
+        if (round == 1) {
+          System.out.println(String.format(
+              "threads=%3d  queue %,12d ops/s  striped %,12d ops/s  %.2fx",
+              threads, queue, striped, (double) striped / queue));
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the take and return pairs per second
+   */
+  private static long run(final SessionPool pool, int threads,
+      final long millis) throws InterruptedException {
+    for (int i = 0; i < threads + SPARE_SESSIONS; i++) {
+      pool.add(new DBSession(null, Integer.MAX_VALUE));
+    }
+    final AtomicLong ops = new AtomicLong();
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(threads);
+    final long[] end = new long[1];
+    for (int i = 0; i < threads; i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          long count = 0;
+          try {
+            start.await();
+            while (System.currentTimeMillis() < end[0]) {
+              for (int j = 0; j < 1000; j++) {
+                DBSession session = pool.poll();
+                if (session == null) {
+                  session = pool.poll(1, TimeUnit.SECONDS);
+                }
+                pool.add(session);
+              }
+              count += 1000;
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            ops.addAndGet(count);
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    end[0] = System.currentTimeMillis() + millis;
+    start.countDown();
+    done.await();
+    return ops.get() * 1000 / millis;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import com.mysql.clusterj.Query;
+import com.mysql.clusterj.Session;
+import com.mysql.clusterj.Transaction;
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.wrapper.HopsSession;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+public class TestInListQuery {
+
+  @Test
+  public void testFewIdsArePruned() {
+    List<List<Integer>> groups = InListQuery.split(ids(8), 8, 500);
+    Assert.assertEquals(8, groups.size());
+    for (List<Integer> group : groups) {
+      Assert.assertEquals(1, group.size());
+    }
+  }
+
+  @Test
+  public void testDuplicatesAreRemoved() {
+    List<List<Integer>> groups =
+        InListQuery.split(new int[]{3, 1, 3, 2, 1}, 8, 500);
+    Assert.assertEquals(3, groups.size());
+    Assert.assertEquals(3, (int) groups.get(0).get(0));
+    Assert.assertEquals(1, (int) groups.get(1).get(0));
+    Assert.assertEquals(2, (int) groups.get(2).get(0));
+  }
+
+  @Test
+  public void testEmpty() {
+    Assert.assertTrue(InListQuery.split(new int[0], 8, 500).isEmpty());
+  }
+
+  @Test
+  public void testChunks() {
+    check(10, 1);
+    check(1000, 2);
+    check(100000, 200);
+  }
+
+  @Test
+  public void testOneInScanInsideTransaction() throws Exception {
+    List<Object> params = findIn(true, 4, new int[]{5, 6, 7, 8, 9});
+    Assert.assertEquals(1, params.size());
+    Assert.assertEquals(5, ((List<?>) params.get(0)).size());
+
+    params = findIn(true, 4, new int[]{5});
+    Assert.assertEquals(1, params.size());
+    Assert.assertEquals(5, params.get(0));
+  }
+
+  @Test
+  public void testOneInScanWithoutParallelism() throws Exception {
+    List<Object> params = findIn(false, 1, new int[]{5, 6, 7});
+    Assert.assertEquals(1, params.size());
+    Assert.assertEquals(3, ((List<?>) params.get(0)).size());
+  }
+
+  /**
+   * Runs findIn on a session whose queries record the value bound to their
+   * parameter, and returns the values of the queries that were executed.
+   */
+  private static List<Object> findIn(boolean active, int parallelism,
+      int[] values) throws StorageException {
+    List<Object> executed =
+        Collections.synchronizedList(new ArrayList<Object>());
+    Properties conf = new Properties();
+    conf.setProperty(ParallelScanner.PARALLELISM,
+        Integer.toString(parallelism));
+    ParallelScanner scanner =
+        new ParallelScanner(ClusterjConnector.getInstance(), conf);
+    ClusterjConnector.sessions.set(new DBSession(
+        new HopsSession(newSession(active, executed)), Integer.MAX_VALUE));
+    try {
+      scanner.findIn(new InListQuery<Object, Object>(Object.class, "id") {
+        @Override
+        protected Object convert(Object dto) {
+          return dto;
+        }
+      }, values);
+    } finally {
+      ClusterjConnector.sessions.remove();
+      scanner.stop();
+    }
+    return executed;
+  }
+
+  private static Session newSession(final boolean active,
+      final List<Object> executed) {
+    final Transaction tx = fake(Transaction.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        return method.getName().equals("isActive") ? active : null;
+      }
+    });
+    return fake(Session.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getName().equals("currentTransaction")) {
+          return tx;
+        } else if (method.getName().equals("createQuery")) {
+          return newQuery(executed);
+        }
+        return anything(method);
+      }
+    });
+  }
+
+  private static Query<?> newQuery(final List<Object> executed) {
+    final Object[] param = new Object[1];
+    return fake(Query.class, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        if (method.getName().equals("setParameter")) {
+          param[0] = args[1];
+          return null;
+        } else if (method.getName().equals("getResultList")) {
+          executed.add(param[0]);
+          return new ArrayList<Object>();
+        }
+        return anything(method);
+      }
+    });
+  }
+
+  /**
+   * @return a fake of the interface method returns, or null
+   */
+  private static Object anything(Method method) {
+    Class<?> type = method.getReturnType();
+    if (!type.isInterface()) {
+      return null;
+    }
+    return fake(type, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        return anything(method);
+      }
+    });
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T fake(Class<T> type, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(TestInListQuery.class.getClassLoader(),
+        new Class[]{type}, handler);
+  }
+
+  private void check(int count, int chunks) {
+    List<List<Integer>> groups = InListQuery.split(ids(count), 8, 500);
+    Assert.assertEquals(chunks, groups.size());
+    Set<Integer> seen = new HashSet<Integer>();
+    for (List<Integer> group : groups) {
+      Assert.assertTrue(group.size() <= 500);
+      seen.addAll(group);
+    }
+    Assert.assertEquals(count, seen.size());
+  }
+
+  private static int[] ids(int count) {
+    int[] ids = new int[count];
+    for (int i = 0; i < count; i++) {
+      ids[i] = i * 7;
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb;
+
+import com.mysql.clusterj.Session;
+import com.mysql.clusterj.Transaction;
+import io.hops.exception.StorageException;
+import io.hops.metadata.ndb.wrapper.HopsSession;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs thousands of transactions through a small thread pool, each one
+ * split into stages that may run on different threads, against sessions
+ * that record what is done to them.
+ */
+public class TestTransactionContext {
+
+  private static final int THREADS = 4;
+  private static final int SESSIONS = 64;
+  private static final int TRANSACTIONS = 5000;
+
+  @Test
+  public void testManyTransactionsOnFewThreads() throws Exception {
+    final FakeSessionSource source = new FakeSessionSource(SESSIONS);
+    final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    final CountDownLatch done = new CountDownLatch(TRANSACTIONS);
+    final AtomicReference<Throwable> failure =
+        new AtomicReference<Throwable>();
+    final ConcurrentHashMap<Integer, Session> writtenBy =
+        new ConcurrentHashMap<Integer, Session>();
+
+    for (int i = 0; i < TRANSACTIONS; i++) {
+      final Integer id = i;
+      // blocks while all sessions are in flight
+      final TransactionContext context = new TransactionContext(source);
+      context.begin();
+      pool.execute(new Stage(context, failure, done) {
+        @Override
+        void perform() throws StorageException {
+          context.run(new TransactionExecutor.Work<Object>() {
+            @Override
+            public Object perform() throws StorageException {
+              HopsSession session =
+                  ClusterjConnector.getInstance().obtainSession();
+              Assert.assertSame(context.getSession(), session);
+              session.persist(id);
+              return null;
+            }
+          });
+          // the next stage runs on whichever thread is free
+          pool.execute(new Stage(context, failure, done) {
+            @Override
+            void perform() throws StorageException {
+              context.run(new TransactionExecutor.Work<Object>() {
+                @Override
+                public Object perform() throws StorageException {
+                  Assert.assertTrue(
+                      ClusterjConnector.getInstance().isTransactionActive());
+                  ClusterjConnector.getInstance().commit();
+                  return null;
+                }
+              });
+              Assert.assertFalse(context.isActive());
+              writtenBy.put(id, source.committed(id));
+              context.close();
+              done.countDown();
+            }
+          });
+        }
+      });
+    }
+
+    Assert.assertTrue(done.await(60, TimeUnit.SECONDS));
+    pool.shutdown();
+    Assert.assertNull(failure.get());
+    Assert.assertEquals(TRANSACTIONS, writtenBy.size());
+    Assert.assertEquals(SESSIONS, source.available());
+  }
+
+  @Test
+  public void testAttachToBoundThread() throws Exception {
+    FakeSessionSource source = new FakeSessionSource(2);
+    TransactionContext first = new TransactionContext(source);
+    TransactionContext second = new TransactionContext(source);
+    first.attach();
+    try {
+      second.attach();
+      Assert.fail("attached two contexts to one thread");
+    } catch (StorageException e) {
+      // expected
+    } finally {
+      first.detach();
+    }
+    Assert.assertNull(ClusterjConnector.sessions.get());
+    first.close();
+    second.close();
+    first.close();
+    Assert.assertTrue(first.isClosed());
+    Assert.assertEquals(2, source.available());
+  }
+
+  private abstract static class Stage implements Runnable {
+    private final TransactionContext context;
+    private final AtomicReference<Throwable> failure;
+    private final CountDownLatch done;
+
+    Stage(TransactionContext context, AtomicReference<Throwable> failure,
+        CountDownLatch done) {
+      this.context = context;
+      this.failure = failure;
+      this.done = done;
+    }
+
+    abstract void perform() throws StorageException;
+
+    @Override
+    public void run() {
+      try {
+        perform();
+        if (ClusterjConnector.sessions.get() != null) {
+          throw new AssertionError("session leaked to the pool thread");
+        }
+      } catch (Throwable t) {
+        failure.compareAndSet(null, t);
+        context.close();
+        done.countDown();
+      }
+    }
+  }
+
+  /**
+   * Sessions backed by proxies that track the transaction state and the
+   * objects persisted in the current transaction.
+   */
+  private static class FakeSessionSource implements SessionSource {
+    private final BlockingQueue<DBSession> pool =
+        new LinkedBlockingQueue<DBSession>();
+    private final ConcurrentHashMap<Object, Session> pending =
+        new ConcurrentHashMap<Object, Session>();
+    private final ConcurrentHashMap<Object, Session> committed =
+        new ConcurrentHashMap<Object, Session>();
+
+    FakeSessionSource(int size) {
+      for (int i = 0; i < size; i++) {
+        pool.add(new DBSession(new HopsSession(newSession()),
+            Integer.MAX_VALUE));
+      }
+    }
+
+    Session committed(Object o) {
+      return committed.get(o);
+    }
+
+    int available() {
+      return pool.size();
+    }
+
+    @Override
+    public DBSession getSession() throws StorageException {
+      try {
+        return pool.take();
+      } catch (InterruptedException e) {
+        throw new StorageException(e);
+      }
+    }
+
+    @Override
+    public void returnSession(DBSession session, boolean forceClose) {
+      pool.add(session);
+    }
+
+    @Override
+    public void recordBegin(long startNanos) {
+    }
+
+    @Override
+    public void recordCommit(long startNanos) {
+    }
+
+    @Override
+    public void recordRollback(long startNanos) {
+    }
+
+    private Session newSession() {
+      final boolean[] active = new boolean[1];
+      final Session[] self = new Session[1];
+      final Transaction tx = (Transaction) Proxy.newProxyInstance(
+          Transaction.class.getClassLoader(), new Class[]{Transaction.class},
+          new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+              String name = method.getName();
+              if (name.equals("isActive")) {
+                return active[0];
+              } else if (name.equals("begin")) {
+                Assert.assertFalse(active[0]);
+                active[0] = true;
+              } else if (name.equals("commit")) {
+                Assert.assertTrue(active[0]);
+                active[0] = false;
+                for (Object o : pending.keySet()) {
+                  if (pending.get(o) == self[0]) {
+                    committed.put(o, pending.remove(o));
+                  }
+                }
+              } else if (name.equals("rollback")) {
+                active[0] = false;
+                pending.values().remove(self[0]);
+              } else {
+                return objectMethod(proxy, method, args);
+              }
+              return null;
+            }
+          });
+      self[0] = (Session) Proxy.newProxyInstance(
+          Session.class.getClassLoader(), new Class[]{Session.class},
+          new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+              String name = method.getName();
+              if (name.equals("currentTransaction")) {
+                return tx;
+              } else if (name.equals("persist")) {
+                Assert.assertTrue(active[0]);
+                Assert.assertNull(pending.put(args[0], self[0]));
+                return null;
+              }
+              return objectMethod(proxy, method, args);
+            }
+          });
+      return self[0];
+    }
+
+    private static Object objectMethod(Object proxy, Method method,
+        Object[] args) {
+      if (method.getName().equals("equals")) {
+        return proxy == args[0];
+      } else if (method.getName().equals("hashCode")) {
+        return System.identityHashCode(proxy);
+      } else if (method.getName().equals("toString")) {
+        return "FakeSession@" + System.identityHashCode(proxy);
+      }
+      throw new UnsupportedOperationException(method.getName());
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.mysqlserver;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+public class TestMysqlEndpoint {
+
+  @Test
+  public void testBusyPoolIsNotAFailure() {
+    Assert.assertFalse(MysqlEndpoint.isConnectionFailure(
+        new SQLTransientConnectionException(
+            "Connection is not available, request timed out after 30000ms.")));
+  }
+
+  @Test
+  public void testUnreachableMysqldIsAFailure() {
+    SQLException refused =
+        new SQLException("Communications link failure", "08S01");
+    Assert.assertTrue(MysqlEndpoint.isConnectionFailure(refused));
+    Assert.assertTrue(MysqlEndpoint.isConnectionFailure(
+        new SQLTransientConnectionException(
+            "Connection is not available, request timed out after 30000ms.",
+            refused.getSQLState(), refused)));
+  }
+
+  @Test
+  public void testOtherErrorsAreNotFailures() {
+    Assert.assertFalse(MysqlEndpoint.isConnectionFailure(
+        new SQLException("Access denied", "28000")));
+    Assert.assertFalse(MysqlEndpoint.isConnectionFailure(
+        new SQLException("no state")));
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.metadata.ndb.wrapper;
+
+import com.mysql.clusterj.ClusterJDatastoreException;
+import com.mysql.clusterj.ClusterJUserException;
+import io.hops.exception.StorageException;
+import io.hops.exception.TransientStorageException;
+import io.hops.exception.TupleAlreadyExistedException;
+import junit.framework.Assert;
+import org.junit.Test;
+
+public class TestNdbErrorClassification {
+
+  private static final int[] TRANSIENT = {7, 8, 9, 10, 15, 18};
+
+  @Test
+  public void testEveryClassification() {
+    for (int code = 0; code <= 18; code++) {
+      NdbErrorClassification classification =
+          NdbErrorClassification.forCode(code);
+      Assert.assertEquals(code, classification.getCode());
+      Assert.assertEquals("classification " + code, isTransient(code),
+          classification.isTransient());
+
+      StorageException e = HopsExceptionHelper.wrap(error(1234, code));
+      Assert.assertEquals("classification " + code, isTransient(code),
+          e instanceof TransientStorageException);
+      Assert.assertTrue(e instanceof NdbException);
+      NdbError ndbError = ((NdbException) e).getNdbError();
+      Assert.assertEquals(1234, ndbError.getCode());
+      Assert.assertEquals(classification, ndbError.getClassification());
+      Assert.assertEquals(classification, NdbErrorClassification.of(e));
+    }
+  }
+
+  @Test
+  public void testUnknownClassification() {
+    Assert.assertEquals(NdbErrorClassification.OTHER,
+        NdbErrorClassification.forCode(-1));
+    Assert.assertEquals(NdbErrorClassification.OTHER,
+        NdbErrorClassification.forCode(19));
+    StorageException e = HopsExceptionHelper.wrap(error(1234, 19));
+    Assert.assertFalse(e instanceof TransientStorageException);
+    Assert.assertEquals(NdbErrorClassification.OTHER,
+        NdbErrorClassification.of(e));
+  }
+
+  @Test
+  public void testTupleAlreadyExisted() {
+    StorageException e = HopsExceptionHelper
+        .wrap(error(NdbError.TUPLE_ALREADY_EXISTED, 3));
+    Assert.assertTrue(e instanceof TupleAlreadyExistedException);
+    Assert.assertEquals(NdbErrorClassification.CONSTRAINT_VIOLATION,
+        ((NdbException) e).getNdbError().getClassification());
+  }
+
+  @Test
+  public void testNotAnNdbError() {
+    StorageException e =
+        HopsExceptionHelper.wrap(new ClusterJUserException("bad query"));
+    Assert.assertFalse(e instanceof NdbException);
+    Assert.assertNull(NdbError.of(e));
+    Assert.assertEquals(NdbErrorClassification.OTHER,
+        NdbErrorClassification.of(e));
+  }
+
+  private static ClusterJDatastoreException error(int code,
+      int classification) {
+    return new ClusterJDatastoreException("Error", code, 0, 0,
+        classification);
+  }
+
+  private static boolean isTransient(int classification) {
+    for (int c : TRANSIENT) {
+      if (c == classification) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
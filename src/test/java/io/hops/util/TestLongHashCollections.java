@@ -0,0 +1,90 @@
+/*
+ * Hops Database abstraction layer for storing the hops metadata in MySQL Cluster
+ * Copyright (C) 2015  hops.io
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package io.hops.util;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class TestLongHashCollections {
+
+  @Test
+  public void testSetMatchesHashSet() {
+    LongHashSet set = new LongHashSet();
+    Set<Long> expected = new HashSet<Long>();
+    Random random = new Random(0);
+    for (int i = 0; i < 100000; i++) {
+      long value = random.nextInt(20000) - 100;
+      if (random.nextInt(3) == 0) {
+        Assert.assertEquals(expected.remove(value), set.remove(value));
+      } else {
+        Assert.assertEquals(expected.add(value), set.add(value));
+      }
+    }
+    Assert.assertEquals(expected, set);
+    Assert.assertEquals(set, expected);
+    Assert.assertEquals(expected.contains(0L), set.contains(0L));
+  }
+
+  @Test
+  public void testMapMatchesHashMap() {
+    LongIntHashMap map = new LongIntHashMap();
+    Map<Long, Integer> expected = new HashMap<Long, Integer>();
+    Random random = new Random(0);
+    for (int i = 0; i < 100000; i++) {
+      long key = random.nextInt(20000) - 100;
+      if (random.nextInt(3) == 0) {
+        Assert.assertEquals(expected.remove(key), map.remove(key));
+      } else {
+        map.put(key, i);
+        expected.put(key, i);
+      }
+    }
+    Assert.assertEquals(expected, map);
+    Assert.assertEquals(map, expected);
+    Assert.assertEquals(-1, map.get(Long.MIN_VALUE, -1));
+    Assert.assertNull(map.get(Long.MIN_VALUE));
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    LongLongHashMap map = new LongLongHashMap();
+    for (long key = 0; key < 1000; key++) {
+      map.put(key, key * 2);
+    }
+    Iterator<Map.Entry<Long, Long>> entries = map.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry<Long, Long> entry = entries.next();
+      Assert.assertEquals(entry.getKey() * 2, (long) entry.getValue());
+      if (entry.getKey() % 2 == 0) {
+        entries.remove();
+      }
+    }
+    Assert.assertEquals(500, map.size());
+    for (long key = 0; key < 1000; key++) {
+      Assert.assertEquals(key % 2 == 1, map.containsKey(key));
+    }
+  }
+}